@@ -1,7 +1,9 @@
 package org.gestern.gringotts;
 
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.Chest;
@@ -10,35 +12,53 @@ import org.bukkit.inventory.DoubleChestInventory;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
 import org.gestern.gringotts.data.EBeanPendingOperation;
+import org.gestern.gringotts.data.VaultRegistry;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.Arrays;
+import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Represents a storage unit for an account.
+ * <p>
+ * Only the position of the vault's sign is kept, so that vaults in chunks that are never loaded cost little memory.
+ * The sign and container blocks are looked up when needed, which requires the chunk to be loaded and must be done
+ * from the thread owning it.
  *
  * @author jast
  */
 public class AccountChest {
 
-    private final Pattern VAULT_PATTERN = Pattern.compile(Configuration.CONF.vaultPattern, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    private static volatile Pattern vaultPattern;
 
-    public final String           id;
+    private final UUID world;
 
     /**
-     * Sign marking the chest as an account chest.
+     * Position of the sign marking the chest as an account chest, packed by {@link VaultRegistry#blockKey}.
      */
-    public final Sign             sign;
-    public List<Location> containerLocations = new ArrayList<>();
+    private final long position;
+
     /**
-     * Account this chest belongs to.
+     * Account this chest belongs to. Vaults loaded from storage share the account object of their owner.
      */
     public final GringottsAccount account;
 
-    private long cachedBalance;
+    /**
+     * Packed positions of the container blocks, resolved the first time they are needed and again after
+     * {@link #forgetContainers()}.
+     */
+    private volatile long[] containers;
+
+    /**
+     * Written on the thread owning the vault's region, read from any thread.
+     */
+    private volatile long cachedBalance;
+
+    /**
+     * Whether the cached balance was compared with the contents since the vault was loaded from storage.
+     */
+    private volatile boolean verified;
 
     /**
      * Create Account chest based on a sign marking its position and belonging to an account.
@@ -47,27 +67,126 @@ public class AccountChest {
      * @param account the account
      */
     public AccountChest(Sign sign, GringottsAccount account, long cachedBalance) {
-        if (sign == null || account == null) {
+        this(sign == null ? null : sign.getWorld().getUID(),
+                sign == null ? 0 : sign.getX(),
+                sign == null ? 0 : sign.getY(),
+                sign == null ? 0 : sign.getZ(),
+                account,
+                cachedBalance);
+
+        // a vault created from its sign is as current as it gets
+        this.verified = true;
+    }
+
+    /**
+     * Create Account chest from the position of its sign, without looking at any block.
+     *
+     * @param world         id of the world the sign is in
+     * @param x             sign x
+     * @param y             sign y
+     * @param z             sign z
+     * @param account       the account
+     * @param cachedBalance the balance last known to be in the chest
+     */
+    public AccountChest(UUID world, int x, int y, int z, GringottsAccount account, long cachedBalance) {
+        if (world == null || account == null) {
             throw new IllegalArgumentException(String.format(
-                    "null arguments to AccountChest() not allowed. args were: sign: %s, account: %s",
-                    sign,
+                    "null arguments to AccountChest() not allowed. args were: world: %s, account: %s",
+                    world,
                     account
             ));
         }
 
-        this.sign    = sign;
-        this.account = account;
-        this.id      = String.format("%s_%d_%d_%d", sign.getWorld().getUID(), sign.getX(), sign.getY(), sign.getZ());
+        this.world         = world;
+        this.position      = VaultRegistry.blockKey(x, y, z);
+        this.account       = account;
         this.cachedBalance = cachedBalance;
     }
 
+    /**
+     * @return id of the world the vault is in
+     */
+    public UUID getWorldId() {
+        return world;
+    }
+
+    /**
+     * @return the world the vault is in, or null if it is not loaded
+     */
+    public World getWorld() {
+        return Bukkit.getWorld(world);
+    }
+
+    /**
+     * @return x of the vault's sign
+     */
+    public int getX() {
+        return VaultRegistry.blockX(position);
+    }
+
+    /**
+     * @return y of the vault's sign
+     */
+    public int getY() {
+        return VaultRegistry.blockY(position);
+    }
+
+    /**
+     * @return z of the vault's sign
+     */
+    public int getZ() {
+        return VaultRegistry.blockZ(position);
+    }
+
+    /**
+     * @return location of the vault's sign
+     */
+    public Location getLocation() {
+        return new Location(getWorld(), getX(), getY(), getZ());
+    }
+
+    /**
+     * @return the block of the vault's sign
+     */
+    public Block signBlock() {
+        return getWorld().getBlockAt(getX(), getY(), getZ());
+    }
+
+    /**
+     * Sign marking the chest as an account chest.
+     *
+     * @return the sign, or null if there is no sign at the vault's position anymore
+     */
+    public Sign sign() {
+        return Util.getBlockStateAs(signBlock(), Sign.class).orElse(null);
+    }
+
+    /**
+     * Packed positions of the container blocks of this vault, if they were resolved already.
+     *
+     * @return packed container positions, possibly empty
+     */
+    public long[] getContainerPositions() {
+        long[] resolved = containers;
+
+        return resolved != null ? resolved : new long[0];
+    }
+
+    /**
+     * Forget the resolved container positions, so they are resolved again the next time they are needed. Called when
+     * the vault's chunk unloads and when a container block is placed or broken next to it.
+     */
+    public void forgetContainers() {
+        containers = null;
+    }
+
     /**
      * The actual "chest" containing this account chest's stuff.
      *
      * @return InventoryHolder for this account chest
      */
     public InventoryHolder chest() {
-        Block block = Util.chestBlock(sign);
+        Block block = Util.chestBlock(signBlock());
 
         if (block != null) {
             BlockState blockState = block.getState(false);
@@ -86,24 +205,64 @@ public class AccountChest {
      * @return Location of the storage block of this account chest.
      */
     public Location chestLocation() {
-        Block block = Util.chestBlock(sign);
+        Block block = Util.chestBlock(signBlock());
 
         return block != null ? block.getLocation() : null;
     }
 
     public boolean matchesLocation(Location loc) {
-        if (this.containerLocations.isEmpty()) {
+        return matchesLocation(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+    }
+
+    /**
+     * Whether the block at the given position is one of the containers of this account chest.
+     *
+     * @param x block x
+     * @param y block y
+     * @param z block z
+     * @return true if the block is one of this chest's containers
+     */
+    public boolean matchesLocation(int x, int y, int z) {
+        long[] resolved = containers;
+
+        if (resolved == null) {
             InventoryHolder holder = chest();
 
+            if (holder == null) {
+                return false;
+            }
+
             if (holder.getInventory() instanceof DoubleChestInventory doubleChest) {
-                containerLocations.add(doubleChest.getLeftSide().getLocation());
-                containerLocations.add(doubleChest.getRightSide().getLocation());
+                resolved = pack(doubleChest.getLeftSide().getLocation(), doubleChest.getRightSide().getLocation());
             } else {
-                containerLocations.add(holder.getInventory().getLocation());
+                resolved = pack(holder.getInventory().getLocation());
+            }
+
+            containers = resolved;
+        }
+
+        long key = VaultRegistry.blockKey(x, y, z);
+
+        for (long container : resolved) {
+            if (container == key) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static long[] pack(Location... locations) {
+        long[] packed = new long[locations.length];
+        int    count  = 0;
+
+        for (Location location : locations) {
+            if (location != null) {
+                packed[count++] = VaultRegistry.blockKey(location.getBlockX(), location.getBlockY(), location.getBlockZ());
             }
         }
-        loc = loc.toBlockLocation();
-        return containerLocations.contains(loc);
+
+        return count == packed.length ? packed : Arrays.copyOf(packed, count);
     }
 
     /**
@@ -128,6 +287,19 @@ public class AccountChest {
         return inventory != null ? new AccountInventory(inventory) : null;
     }
 
+    /**
+     * Get the inventory of this chest for direct manipulation, after checking that the vault is still valid.
+     *
+     * @return inventory of this chest, or null if the vault is not valid anymore and was removed from storage
+     */
+    Inventory validInventory() {
+        if (updateInvalid()) {
+            return null;
+        }
+
+        return inventory();
+    }
+
     /**
      * Test if this chest is valid, and if not, removes it from storage.
      *
@@ -228,20 +400,18 @@ public class AccountChest {
      */
     @SuppressWarnings("SimplifiableIfStatement")
     public boolean notValid() {
-        Optional<Sign> state = Util.getBlockStateAs(sign.getBlock(), Sign.class);
+        Sign sign = sign();
 
-        if (state.isEmpty()) {
+        if (sign == null) {
             return true;
         }
 
-        Sign sign = state.get();
-
         // Fetch the sign again to avoid strange bug where lines are blank
         // TODO: use getSide
         String[] lines = sign.getLines();
         String line0 = ChatColor.stripColor(lines[0]).trim();
 
-        Matcher match = VAULT_PATTERN.matcher(line0);
+        Matcher match = vaultPattern().matcher(line0);
 
         if (!match.matches()) {
             return true;
@@ -264,7 +434,21 @@ public class AccountChest {
     void destroy() {
         Gringotts.instance.getDao().deleteAccountChest(this);
 
-        sign.getBlock().breakNaturally();
+        signBlock().breakNaturally();
+    }
+
+    /**
+     * The compiled vault sign pattern, shared by all vaults and compiled again when the configuration changes.
+     */
+    private static Pattern vaultPattern() {
+        Pattern pattern = vaultPattern;
+
+        if (pattern == null || !pattern.pattern().equals(Configuration.CONF.vaultPattern)) {
+            pattern = Pattern.compile(Configuration.CONF.vaultPattern, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            vaultPattern = pattern;
+        }
+
+        return pattern;
     }
 
     /**
@@ -274,13 +458,13 @@ public class AccountChest {
      */
     @Override
     public String toString() {
-        Location loc = sign.getLocation();
+        World loaded = getWorld();
 
         return "[vault] "
-            + loc.getBlockX() + ", "
-            + loc.getBlockY() + ", "
-            + loc.getBlockZ() + ", "
-            + loc.getWorld().getName();
+            + getX() + ", "
+            + getY() + ", "
+            + getZ() + ", "
+            + (loaded != null ? loaded.getName() : world);
     }
 
     /**
@@ -324,7 +508,8 @@ public class AccountChest {
         final int prime  = 31;
         int       result = 1;
 
-        result = prime * result + sign.getLocation().hashCode();
+        result = prime * result + world.hashCode();
+        result = prime * result + Long.hashCode(position);
 
         return result;
     }
@@ -354,7 +539,7 @@ public class AccountChest {
 
         AccountChest other = (AccountChest) obj;
 
-        return this.sign.getLocation().equals(other.sign.getLocation());
+        return this.position == other.position && this.world.equals(other.world);
     }
 
     /**
@@ -407,7 +592,9 @@ public class AccountChest {
      * (in fact this checks if vault's sign is loaded but we don't care)
      */
     public boolean isChestLoaded() {
-        return sign.getWorld().isChunkLoaded(sign.getX()/16, sign.getZ()/16);
+        World loaded = getWorld();
+
+        return loaded != null && loaded.isChunkLoaded(getX() >> 4, getZ() >> 4);
     }
 
     public void setCachedBalance(long amount) {
@@ -419,6 +606,67 @@ public class AccountChest {
         return cachedBalance;
     }
 
+    /**
+     * @return whether the cached balance was compared with the contents since the vault was loaded from storage
+     */
+    public boolean isVerified() {
+        return verified;
+    }
+
+    /**
+     * Compare the cached balance with the contents of this chest once after it was loaded from storage, and correct
+     * it if they differ. Removes the vault if it isn't valid anymore. Must be called from the thread owning the chest's
+     * region, with the chunk loaded.
+     *
+     * @return whether the cached balance had to be corrected
+     */
+    public boolean verify() {
+        if (verified) {
+            return false;
+        }
+
+        verified = true;
+
+        long realBalance = balance(true);
+
+        if (realBalance == cachedBalance) {
+            return false;
+        }
+
+        Gringotts.instance.getLogger().severe("Balance differs for account "
+                + account.owner.getId() + " at location " + this
+                + ". Was supposed to be at " + cachedBalance + ", is at " + realBalance
+        );
+
+        setCachedBalance(realBalance);
+
+        return true;
+    }
+
+    /**
+     * Recount the contents of this chest and update the cached balance if it changed.
+     * Must be called from the thread owning the chest's region.
+     */
+    public void recountCachedBalance() {
+        long balance = balance(true);
+
+        if (balance != cachedBalance) {
+            setCachedBalance(balance);
+        }
+    }
+
+    /**
+     * Store the balance of this chest while its chunk unloads, recounting the contents first if the vault is intact.
+     * Blocks can be in a transient state while a chunk unloads, so a vault that doesn't look valid is neither counted
+     * nor removed; that is left to when it is loaded or used again. Must be called from the thread owning the chest's
+     * region.
+     */
+    public void storeBalanceOnUnload() {
+        Inventory inventory = notValid() ? null : inventory();
+
+        setCachedBalance(inventory != null ? new AccountInventory(inventory).balance() : cachedBalance);
+    }
+
     private void emitPendingOperation(long amount) {
         Gringotts.instance.getPendingOperationManager()
             .registerNewOperation(new EBeanPendingOperation(this, amount));
@@ -1,8 +1,11 @@
 package org.gestern.gringotts;
 
+import org.bukkit.World;
 import org.gestern.gringotts.accountholder.AccountHolder;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Manages accounts.
@@ -10,6 +13,12 @@ import java.util.Collection;
  * @author jast
  */
 public class Accounting {
+    /**
+     * Maximum horizontal distance between the signs of two chests sharing a container:
+     * sign to container, container to the other half of a double chest, and that half to its sign.
+     */
+    private static final int CONNECT_REACH = 3;
+
     /**
      * Get the account associated with an account holder.
      * If it was not yet stored in the data storage, it will be persisted.
@@ -45,6 +54,28 @@ public class Accounting {
         return false;
     }
 
+    /**
+     * Collect the stored chests close enough to the given chest to possibly share a container with it.
+     *
+     * @param chest chest to find neighbours for
+     * @return stored chests in the chunks around the given chest
+     */
+    private Collection<AccountChest> nearbyChests(AccountChest chest) {
+        World world = chest.getWorld();
+        int x = chest.getX();
+        int z = chest.getZ();
+
+        List<AccountChest> nearby = new ArrayList<>();
+
+        for (int chunkX = (x - CONNECT_REACH) >> 4; chunkX <= (x + CONNECT_REACH) >> 4; chunkX++) {
+            for (int chunkZ = (z - CONNECT_REACH) >> 4; chunkZ <= (z + CONNECT_REACH) >> 4; chunkZ++) {
+                nearby.addAll(Gringotts.instance.getDao().getAccountChests(world, chunkX, chunkZ));
+            }
+        }
+
+        return nearby;
+    }
+
     /**
      * Save an AccountChest to Account association.
      *
@@ -53,17 +84,15 @@ public class Accounting {
      * @throws GringottsStorageException when saving of account chest failed
      */
     public boolean addChest(AccountChest chest) {
-        // TODO refactor to do a more intelligent/quick query
-        Collection<AccountChest> allChests = Gringotts.instance.getDao().retrieveChests();
-
         // if there is an invalid stored chest on location of new chest, remove it from storage.
-        if (allChests.contains(chest)) {
+        AccountChest stored = Gringotts.instance.getDao().getAccountChest(chest.getLocation());
+
+        if (chest.equals(stored)) {
             Gringotts.instance.getLogger().info("removing orphaned vault: " + chest);
             Gringotts.instance.getDao().deleteAccountChest(chest);
-            allChests.remove(chest);
         }
 
-        if (chestConnected(chest, allChests)) {
+        if (chestConnected(chest, nearbyChests(chest))) {
             return false;
         }
 
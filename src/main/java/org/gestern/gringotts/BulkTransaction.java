@@ -0,0 +1,132 @@
+package org.gestern.gringotts;
+
+import org.bukkit.Bukkit;
+import org.gestern.gringotts.api.TransactionResult;
+import org.gestern.gringotts.data.DAO;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
+/**
+ * Runs many deposits and withdrawals on any number of accounts together.
+ * <p>
+ * Legs are grouped by account, so that the legs of one account run back to back and in the order they were added.
+ * On Paper, all legs are made in a single hop to the server thread within {@link DAO#atomically}, so the whole batch
+ * is written to storage by one flush. On Folia, every account runs its legs on the regions owning its containers,
+ * and different accounts run in parallel.
+ */
+public final class BulkTransaction {
+    private final DAO       dao  = Gringotts.instance.getDao();
+    private final List<Leg> legs = new ArrayList<>();
+
+    /**
+     * A single deposit or withdrawal.
+     *
+     * @param account account to change
+     * @param amount  amount in cents to add, or to remove if negative
+     */
+    private record Leg(GringottsAccount account, long amount) {
+    }
+
+    /**
+     * Add a leg.
+     *
+     * @param account account to change
+     * @param amount  amount in cents to add, or to remove if negative
+     * @return index of the leg's result
+     */
+    public int add(GringottsAccount account, long amount) {
+        legs.add(new Leg(account, amount));
+
+        return legs.size() - 1;
+    }
+
+    /**
+     * Run all legs.
+     *
+     * @return future completed with the result of every leg, in the order they were added
+     */
+    public CompletableFuture<TransactionResult[]> run() {
+        Map<String, List<Integer>> byAccount = new LinkedHashMap<>();
+
+        for (int i = 0; i < legs.size(); i++) {
+            GringottsAccount account = legs.get(i).account();
+
+            byAccount.computeIfAbsent(account.owner.getType() + ":" + account.owner.getId(), key -> new ArrayList<>())
+                    .add(i);
+        }
+
+        if (SchedulerUtil.isFolia()) {
+            return runRegional(byAccount);
+        }
+
+        CompletableFuture<TransactionResult[]> f = new CompletableFuture<>();
+
+        Runnable runMe = () -> {
+            try {
+                f.complete(dao.atomically(() -> runAll(byAccount)));
+            } catch (RuntimeException e) {
+                f.completeExceptionally(e);
+            }
+        };
+
+        if (Bukkit.isGlobalTickThread()) {
+            runMe.run();
+        } else {
+            Gringotts.instance.getTransactionQueue().submit("batch", runMe);
+        }
+
+        return f;
+    }
+
+    private TransactionResult[] runAll(Map<String, List<Integer>> byAccount) {
+        TransactionResult[] results = new TransactionResult[legs.size()];
+
+        for (List<Integer> indexes : byAccount.values()) {
+            for (int index : indexes) {
+                Leg leg = legs.get(index);
+
+                try {
+                    results[index] = leg.amount() >= 0
+                            ? leg.account().deposit(leg.amount())
+                            : new Withdrawal(leg.account(), dao).remove(-leg.amount()).result();
+                } catch (RuntimeException e) {
+                    // a leg that fails doesn't stop the others
+                    Gringotts.instance.getLogger().log(Level.WARNING, "Batch leg on " + leg.account() + " failed", e);
+
+                    results[index] = TransactionResult.ERROR;
+                }
+            }
+        }
+
+        return results;
+    }
+
+    private CompletableFuture<TransactionResult[]> runRegional(Map<String, List<Integer>> byAccount) {
+        TransactionResult[]    results  = new TransactionResult[legs.size()];
+        CompletableFuture<?>[] accounts = new CompletableFuture<?>[byAccount.size()];
+        int                    next     = 0;
+
+        for (List<Integer> indexes : byAccount.values()) {
+            CompletableFuture<?> chain = CompletableFuture.completedFuture(null);
+
+            for (int index : indexes) {
+                Leg leg = legs.get(index);
+
+                // a leg that fails doesn't stop the others of its account
+                chain = chain.thenCompose(ignored -> leg.amount() >= 0
+                        ? leg.account().addAsync(leg.amount())
+                        : leg.account().removeAsync(-leg.amount())
+                ).handle((result, e) -> results[index] = e == null ? result : TransactionResult.ERROR);
+            }
+
+            accounts[next++] = chain;
+        }
+
+        return CompletableFuture.allOf(accounts).thenApply(ignored -> results);
+    }
+}
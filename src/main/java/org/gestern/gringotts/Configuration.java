@@ -85,6 +85,63 @@ public enum Configuration {
      * if true, the denomination finding process will include shulker boxes
      */
     public boolean includeShulkerBoxes = true;
+    /**
+     * Maximum time in seconds that account changes are held in memory before being written to storage.
+     * 0 or less queues every change for writing right away.
+     */
+    public long storageFlushInterval = 5;
+    /**
+     * Number of storage reader threads, the maximum number of storage reads running at the same time.
+     */
+    public int storageReaders = 4;
+    /**
+     * Time in milliseconds the storage writer collects writes before committing them together.
+     */
+    public long storageCommitWindow = 2;
+    /**
+     * JDBC URL of the database accounts are stored in. Empty uses the SQLite file in the plugin folder.
+     */
+    public String storageUrl = "";
+    /**
+     * JDBC driver class. Empty uses the driver of the dialect.
+     */
+    public String storageDriver = "";
+    /**
+     * SQL dialect of the database. Empty derives it from the URL.
+     */
+    public String storageDialect = "";
+    /**
+     * User name to connect to the database with.
+     */
+    public String storageUsername = "";
+    /**
+     * Password to connect to the database with.
+     */
+    public String storagePassword = "";
+    /**
+     * Maximum number of pooled database connections. 0 or less sizes the pool for the storage readers and writer.
+     */
+    public int storagePoolSize = 0;
+    /**
+     * Transaction isolation level. Empty uses the default of the dialect.
+     */
+    public String storageIsolation = "";
+    /**
+     * Whether the default SQLite file is switched to write-ahead logging. The switch is stored in the file.
+     */
+    public boolean storageSqliteWal = false;
+    /**
+     * Time in milliseconds that placeholder values are served from cache before they are recounted.
+     */
+    public long placeholderCacheTtl = 1000;
+    /**
+     * Time in milliseconds per tick that queued transactions from other threads may take.
+     */
+    public long transactionTickBudget = 5;
+    /**
+     * Time in milliseconds per tick that checking the balances of vaults loaded from storage may take.
+     */
+    public long reconcileTickBudget = 2;
     /**
      * Currency configuration.
      */
@@ -179,6 +236,24 @@ public enum Configuration {
         CONF.balanceShowVault      = savedConfig.getBoolean("balance.show-vault", true);
         CONF.balanceShowEnderchest = savedConfig.getBoolean("balance.show-enderchest", true);
 
+        CONF.storageFlushInterval = savedConfig.getLong("storage.flush-interval", 5);
+        CONF.storageReaders       = savedConfig.getInt("storage.readers", 4);
+        CONF.storageCommitWindow  = savedConfig.getLong("storage.commit-window", 2);
+        CONF.storageUrl           = savedConfig.getString("storage.database.url", "");
+        CONF.storageDriver        = savedConfig.getString("storage.database.driver", "");
+        CONF.storageDialect       = savedConfig.getString("storage.database.dialect", "");
+        CONF.storageUsername      = savedConfig.getString("storage.database.username", "");
+        CONF.storagePassword      = savedConfig.getString("storage.database.password", "");
+        CONF.storagePoolSize      = savedConfig.getInt("storage.database.pool-size", 0);
+        CONF.storageIsolation     = savedConfig.getString("storage.database.isolation", "");
+        CONF.storageSqliteWal     = savedConfig.getBoolean("storage.database.sqlite-wal", false);
+
+        CONF.placeholderCacheTtl = savedConfig.getLong("placeholders.cache-ttl", 1000);
+
+        CONF.transactionTickBudget = savedConfig.getLong("transactions.tick-budget", 5);
+
+        CONF.reconcileTickBudget = savedConfig.getLong("reconciliation.tick-budget", 2);
+
         CONF.language = savedConfig.getString("language", "custom");
 
         CONF.vaultPattern        = savedConfig.getString("vault_pattern", "[^\\[]*\\[(\\w*) ?vault\\]");
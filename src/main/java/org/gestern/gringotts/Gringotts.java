@@ -1,10 +1,7 @@
 package org.gestern.gringotts;
 
 import io.ebean.Database;
-import io.ebean.DatabaseFactory;
-import io.ebean.Transaction;
-import io.ebean.config.DatabaseConfig;
-import io.ebean.datasource.DataSourceConfig;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import net.milkbowl.vault.economy.Economy;
 import org.bstats.bukkit.Metrics;
 import org.bstats.charts.AdvancedPie;
@@ -19,11 +16,13 @@ import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.gestern.gringotts.accountholder.AccountHolderFactory;
+import org.gestern.gringotts.accountholder.PlayerNameIndex;
 import org.gestern.gringotts.api.Eco;
 import org.gestern.gringotts.api.dependency.Dependency;
 import org.gestern.gringotts.api.dependency.DependencyProvider;
 import org.gestern.gringotts.api.impl.GringottsEco;
 import org.gestern.gringotts.api.impl.VaultConnector;
+import org.gestern.gringotts.commands.AsyncTabCompleteListener;
 import org.gestern.gringotts.commands.GringottsExecutor;
 import org.gestern.gringotts.commands.MoneyAdminExecutor;
 import org.gestern.gringotts.commands.MoneyExecutor;
@@ -31,10 +30,14 @@ import org.gestern.gringotts.commands.VaultCommand;
 import org.gestern.gringotts.currency.Denomination;
 import org.gestern.gringotts.data.DAO;
 import org.gestern.gringotts.data.EBeanDAO;
+import org.gestern.gringotts.data.StorageBackend;
+import org.gestern.gringotts.data.StorageExecutor;
 import org.gestern.gringotts.dependency.DependencyProviderImpl;
 import org.gestern.gringotts.dependency.GenericDependency;
 import org.gestern.gringotts.dependency.placeholdersapi.PlaceholderAPIDependency;
 import org.gestern.gringotts.event.AccountListener;
+import org.gestern.gringotts.event.PlayerCentsListener;
+import org.gestern.gringotts.event.PlayerNameListener;
 import org.gestern.gringotts.event.PlayerVaultListener;
 import org.gestern.gringotts.event.VaultCreator;
 import org.gestern.gringotts.pendingoperation.PendingOperationListener;
@@ -46,8 +49,9 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The type Gringotts.
@@ -57,14 +61,20 @@ public class Gringotts extends JavaPlugin {
     public static Gringotts instance;
 
     private static final String MESSAGES_YML = "messages.yml";
+    private static final String PLAYER_NAMES_FILE = "player-names.txt";
 
     private final AccountHolderFactory accountHolderFactory = new AccountHolderFactory();
     private final DependencyProvider dependencies = new DependencyProviderImpl(this);
-    private final Database ebean;
+    private Database ebean;
     private final PendingOperationManager pendingOperationManager = new PendingOperationManager();
+    private final PlayerNameIndex playerNameIndex;
+    private final TransactionQueue transactionQueue = new TransactionQueue();
+    private final VaultReconciler vaultReconciler = new VaultReconciler();
     private Accounting accounting;
     private DAO dao;
     private Eco eco;
+    private ScheduledTask flushTask;
+    private StorageExecutor storageExecutor;
 
     /**
      * Instantiates a new Gringotts.
@@ -75,27 +85,7 @@ public class Gringotts extends JavaPlugin {
         //noinspection ResultOfMethodCallIgnored
         getDataFolder().mkdirs();
 
-        DatabaseConfig cfg = new DatabaseConfig();
-        Properties properties = new Properties();
-
-        DataSourceConfig dataSourceConfig = new DataSourceConfig();
-        dataSourceConfig.setUsername("bukkit");
-        dataSourceConfig.setPassword("walrus");
-        dataSourceConfig.setUrl(getDatabaseString());
-        dataSourceConfig.setDriver("org.sqlite.JDBC");
-        dataSourceConfig.setIsolationLevel(Transaction.SERIALIZABLE);
-
-        cfg.setDataSourceConfig(dataSourceConfig);
-        cfg.setDdlGenerate(true);
-        cfg.setDdlRun(true);
-        cfg.setRunMigration(true);
-        cfg.setClasses(EBeanDAO.getDatabaseClasses());
-
-        cfg.loadFromProperties(properties);
-        ClassLoader previousCL = Thread.currentThread().getContextClassLoader();
-        Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
-        ebean = DatabaseFactory.create(cfg);
-        Thread.currentThread().setContextClassLoader(previousCL);
+        playerNameIndex = new PlayerNameIndex(new File(getDataFolder(), PLAYER_NAMES_FILE).toPath(), getLogger());
     }
 
     /**
@@ -104,6 +94,23 @@ public class Gringotts extends JavaPlugin {
     @Override
     public void onEnable() {
         try {
+            // load and init configuration
+            saveDefaultConfig(); // saves default configuration if no config.yml exists yet
+            reloadConfig();
+
+            // the database is configured in config.yml
+            StorageBackend backend = StorageBackend.fromConfig(getDatabaseFile());
+
+            ebean = backend.open(getClass().getClassLoader());
+            getLogger().info("Using " + backend.getDialect().name().toLowerCase(Locale.ROOT) + " database with up to "
+                    + backend.getPoolSize() + " connections.");
+
+            storageExecutor = new StorageExecutor(
+                    ebean,
+                    Configuration.CONF.storageReaders,
+                    Configuration.CONF.storageCommitWindow
+            );
+
             // just call DAO once to ensure it's loaded before startup is complete
             dao = getDAO();
 
@@ -113,9 +120,17 @@ public class Gringotts extends JavaPlugin {
                 pendingOperationManager.init();
             });
 
-            // load and init configuration
-            saveDefaultConfig(); // saves default configuration if no config.yml exists yet
-            reloadConfig();
+            // players online during a reload are known right away, everyone else once the index is loaded
+            Bukkit.getOnlinePlayers().forEach(playerNameIndex::update);
+            SchedulerUtil.runAsync(playerNameIndex::load);
+
+            if (Configuration.CONF.storageFlushInterval > 0) {
+                flushTask = SchedulerUtil.runAsyncAtFixedRate(
+                        dao::flush,
+                        Configuration.CONF.storageFlushInterval,
+                        TimeUnit.SECONDS
+                );
+            }
 
             accounting = new Accounting();
             eco        = new GringottsEco();
@@ -238,7 +253,25 @@ public class Gringotts extends JavaPlugin {
     public void onDisable() {
         this.dependencies.onDisable();
 
-        // shut down db connection
+        if (flushTask != null) {
+            flushTask.cancel();
+        }
+
+        pendingOperationManager.shutdown();
+        playerNameIndex.save();
+
+        // let queued reads and writes finish before the last flush
+        if (storageExecutor != null) {
+            try {
+                if (!storageExecutor.shutdown(10, TimeUnit.SECONDS)) {
+                    getLogger().warning("Timed out waiting for queued storage operations.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // shut down db connection, writing pending changes first
         try {
             if (dao != null) {
                 dao.shutdown();
@@ -247,6 +280,11 @@ public class Gringotts extends JavaPlugin {
             getLogger().severe(e.toString());
         }
 
+        // give back the pooled connections, which a server database would otherwise keep open across reloads
+        if (ebean != null) {
+            ebean.shutdown();
+        }
+
         getLogger().info("disabled");
     }
 
@@ -333,9 +371,12 @@ public class Gringotts extends JavaPlugin {
         PluginManager manager = getServer().getPluginManager();
 
         manager.registerEvents(new AccountListener(), this);
+        manager.registerEvents(new PlayerNameListener(), this);
+        manager.registerEvents(new PlayerCentsListener(), this);
         manager.registerEvents(new PlayerVaultListener(), this);
         manager.registerEvents(new VaultCreator(), this);
         manager.registerEvents(new PendingOperationListener(), this);
+        manager.registerEvents(new AsyncTabCompleteListener(), this);
 
         // listeners for other account types are loaded with dependencies
     }
@@ -411,17 +452,9 @@ public class Gringotts extends JavaPlugin {
         return ebean;
     }
 
-    private String getDatabaseString() {
-        String input = "jdbc:sqlite:{DIR}{NAME}.db";
-
-        input = input.replaceAll(
-                "\\{DIR}",
-                getDataFolder().getPath().replaceAll("\\\\", "/") + "/");
-        input = input.replaceAll(
-                "\\{NAME}",
-                getName().replaceAll("[^\\w_-]", ""));
-
-        return input;
+    private String getDatabaseFile() {
+        return getDataFolder().getPath().replaceAll("\\\\", "/") + "/"
+                + getName().replaceAll("[^\\w_-]", "") + ".db";
     }
 
     /**
@@ -460,6 +493,42 @@ public class Gringotts extends JavaPlugin {
         return eco;
     }
 
+    /**
+     * Resolves player names to unique ids without touching disk.
+     *
+     * @return the player name index
+     */
+    public PlayerNameIndex getPlayerNameIndex() {
+        return playerNameIndex;
+    }
+
+    /**
+     * Runs account operations from other threads on the server thread, batched per tick.
+     *
+     * @return the transaction queue
+     */
+    public TransactionQueue getTransactionQueue() {
+        return transactionQueue;
+    }
+
+    /**
+     * Runs storage reads and writes off the server thread.
+     *
+     * @return the storage executor
+     */
+    public StorageExecutor getStorageExecutor() {
+        return storageExecutor;
+    }
+
+    /**
+     * Checks the cached balances of vaults loaded from storage, a few per tick.
+     *
+     * @return the vault reconciler
+     */
+    public VaultReconciler getVaultReconciler() {
+        return vaultReconciler;
+    }
+
     public PendingOperationManager getPendingOperationManager() {
         return pendingOperationManager;
     }
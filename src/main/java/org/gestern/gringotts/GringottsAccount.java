@@ -11,8 +11,10 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.BlockStateMeta;
 import org.gestern.gringotts.accountholder.AccountHolder;
 import org.gestern.gringotts.accountholder.PlayerAccountHolder;
+import org.gestern.gringotts.api.BalanceBreakdown;
 import org.gestern.gringotts.api.TransactionResult;
 import org.gestern.gringotts.currency.Denomination;
+import org.gestern.gringotts.currency.GringottsCurrency;
 import org.gestern.gringotts.data.DAO;
 
 import java.util.ArrayList;
@@ -29,23 +31,41 @@ import java.util.concurrent.*;
  */
 public class GringottsAccount {
     public final  AccountHolder owner;
-    private final DAO           dao = Gringotts.instance.getDao();
+    private final DAO           dao;
+
+    /**
+     * Operations on Folia, where the account's containers may each belong to a different region.
+     */
+    private final RegionalOperations regional;
 
     public GringottsAccount(AccountHolder owner) {
+        this(owner, Gringotts.instance.getDao());
+    }
+
+    /**
+     * Create an account stored by the given DAO rather than the plugin's.
+     *
+     * @param owner the account owner
+     * @param dao   storage of the account
+     */
+    public GringottsAccount(AccountHolder owner, DAO dao) {
         if (owner == null) {
             throw new IllegalArgumentException("Account owner cannot be null");
         }
 
         this.owner = owner;
+        this.dao = dao;
+        this.regional = new RegionalOperations(this, dao);
     }
 
     /**
      * Call a function in the main thread. The returned CompletionStage will be completed after the function is called.
+     * Calls from other threads are queued and run together with other queued operations in the next tick.
      *
      * @param callMe function to call
      * @return will be completed after function is called
      */
-    private static <V> CompletableFuture<V> callSync(Callable<V> callMe) {
+    private <V> CompletableFuture<V> callSync(Callable<V> callMe) {
         final CompletableFuture<V> f = new CompletableFuture<>();
 
         Runnable runMe = () -> {
@@ -59,7 +79,7 @@ public class GringottsAccount {
         if (Bukkit.isGlobalTickThread()) {
             runMe.run();
         } else {
-            SchedulerUtil.runGlobal(runMe);
+            Gringotts.instance.getTransactionQueue().submit(owner.getType() + ":" + owner.getId(), runMe);
         }
 
         return f;
@@ -71,18 +91,37 @@ public class GringottsAccount {
      * @return current balance of this account in cents
      */
     public long getBalance() {
-        CompletableFuture<Long> cents            = getCents();
-        CompletableFuture<Long> playerInv        = countPlayerInventory();
-        CompletableFuture<Long> playerEnderchest = countPlayerEnderchest();
-        CompletableFuture<Long> chestInv         = countChestInventories();
+        return getTimeout(getBalanceAsync());
+    }
 
-        // order of combination is important, because chestInv/playerInv/enderchest might have to run on main thread
-        CompletableFuture<Long> f = chestInv
-                .thenCombine(playerInv, Long::sum)
-                .thenCombine(playerEnderchest, Long::sum)
-                .thenCombine(cents, Long::sum);
+    /**
+     * Current balance of this account in cents, without blocking the calling thread.
+     * The returned future is completed on the server thread, or on Folia on the thread of the region visited last.
+     *
+     * @return future completed with the current balance of this account in cents
+     */
+    public CompletableFuture<Long> getBalanceAsync() {
+        return countAll().thenApply(Counted::total);
+    }
 
-        return getTimeout(f);
+    /**
+     * Balance of this account split by where it is kept, counted in a single pass.
+     *
+     * @return the balance breakdown
+     */
+    public BalanceBreakdown getBalanceBreakdown() {
+        return getTimeout(getBalanceBreakdownAsync());
+    }
+
+    /**
+     * Balance of this account split by where it is kept, counted in a single pass without blocking the calling
+     * thread. The returned future is completed on the server thread, or on Folia on the thread of the region
+     * visited last.
+     *
+     * @return future completed with the balance breakdown
+     */
+    public CompletableFuture<BalanceBreakdown> getBalanceBreakdownAsync() {
+        return countAll().thenApply(Counted::toBreakdown);
     }
 
     /**
@@ -145,181 +184,287 @@ public class GringottsAccount {
      * @return Whether amount successfully added
      */
     public TransactionResult add(long amount) {
-        Callable<TransactionResult> callMe = () -> {
-            // Cannot add negative amount
-            if (amount < 0) {
-                return TransactionResult.ERROR;
-            }
-
-            long centsStored = dao.retrieveCents(this);
+        return getTimeout(addAsync(amount));
+    }
 
-            long remaining = amount + centsStored;
+    /**
+     * Add an amount in cents to this account if able to, without blocking the calling thread.
+     * The returned future is completed on the server thread, or on Folia on the thread of the region visited last.
+     *
+     * @param amount amount in cents to add
+     * @return future completed with the result of adding
+     */
+    public CompletableFuture<TransactionResult> addAsync(long amount) {
+        if (SchedulerUtil.isFolia()) {
+            return regional.add(amount);
+        }
 
-            // add currency to account's vaults
-            if (Configuration.CONF.useVaultContainer) {
-                for (AccountChest chest : dao.retrieveChests(this)) {
-                    remaining -= chest.add(remaining);
+        return callSync(() -> deposit(amount));
+    }
 
-                    if (remaining <= 0) {
-                        break;
-                    }
+    /**
+     * Add an amount in cents to this account. Must be run on the server thread.
+     *
+     * @param amount amount in cents to add
+     * @return result of adding
+     */
+    TransactionResult deposit(long amount) {
+        // Cannot add negative amount
+        if (amount < 0) {
+            return TransactionResult.ERROR;
+        }
 
-                    if (Configuration.CONF.includeShulkerBoxes) {
-                        remaining = addToShulkerBox(remaining, chest.chest().getInventory());
-                    }
-                }
-            }
+        long centsStored = dao.retrieveCents(this);
 
-            // add stuff to player's inventory and enderchest too, when they are online
-            Optional<Player> playerOpt = playerOwner();
+        // add stuff to player's inventory and enderchest too, when they are online
+        return addToOwner(playerOwner().orElse(null), addToVaults(amount + centsStored), centsStored);
+    }
 
-            if (playerOpt.isPresent()) {
-                Player player = playerOpt.get();
+    /**
+     * Add an amount in cents to this account where it fits, without dropping anything that doesn't.
+     * Must be run on the server thread.
+     *
+     * @param amount amount in cents to add
+     * @return the part of the amount that didn't fit
+     */
+    long place(long amount) {
+        long centsStored = dao.retrieveCents(this);
+        long remaining   = placeWithOwner(playerOwner().orElse(null), addToVaults(amount + centsStored), centsStored);
 
-                if (remaining > 0 && Permissions.USE_VAULT_INVENTORY.isAllowed(player)) {
-                    remaining -= new AccountInventory(player.getInventory()).add(remaining);
+        // cents that are still stored weren't placed anywhere
+        return remaining > 0 ? Math.max(0, remaining - centsStored) : 0;
+    }
 
-                    if (Configuration.CONF.includeShulkerBoxes && remaining > 0) {
-                        remaining = addToShulkerBox(remaining, player.getInventory());
-                    }
+    private long addToVaults(long remaining) {
+        // add currency to account's vaults
+        if (Configuration.CONF.useVaultContainer) {
+            for (AccountChest chest : dao.retrieveChests(this)) {
+                if (remaining <= 0) {
+                    break;
                 }
-                if (remaining > 0 && Configuration.CONF.useVaultEnderChest && Permissions.USE_VAULT_ENDERCHEST.isAllowed(player)) {
-                    remaining -= new AccountInventory(player.getEnderChest()).add(remaining);
 
-                    if (Configuration.CONF.includeShulkerBoxes && remaining > 0) {
-                        remaining = addToShulkerBox(remaining, player.getEnderChest());
-                    }
-                }
+                remaining = addToVault(chest, remaining);
             }
+        }
 
-            // allow smallest denom value as threshold for available space
-            // TODO make maximum virtual amount configurable
-            // this is under the assumption that there is always at least 1 denomination
-            List<Denomination> denoms             = Configuration.CONF.getCurrency().getDenominations();
-            long               smallestDenomValue = denoms.get(denoms.size() - 1).getValue();
+        return remaining;
+    }
 
-            if (remaining < smallestDenomValue) {
-                dao.storeCents(this, remaining);
-                remaining = 0;
-            }
+    /**
+     * Add to a vault, including the shulker boxes in it. Must be run on the thread owning the vault.
+     *
+     * @param chest     the vault
+     * @param remaining amount left to add
+     * @return amount left to add afterwards
+     */
+    long addToVault(AccountChest chest, long remaining) {
+        remaining -= chest.add(remaining);
 
-            if (remaining == 0) {
-                return TransactionResult.SUCCESS;
-            }
+        if (remaining > 0 && Configuration.CONF.includeShulkerBoxes) {
+            remaining = addToShulkerBox(remaining, chest.chest().getInventory());
+        }
 
-            if (Configuration.CONF.dropOverflowingItem && playerOpt.isPresent()) {
-                for (Denomination denomination : Configuration.CONF.getCurrency().getDenominations()) {
-                    if (denomination.getValue() > remaining) {
-                        continue;
-                    }
+        return remaining;
+    }
 
-                    // noinspection ConstantValue
-                    if (denomination.getKey().type == null) {
-                        Gringotts.instance.getLogger().warning("Denomination " + denomination.getUnitName() + " has no item type set!");
+    /**
+     * Whether money in a player's inventory belongs to their account. Shared by counting, depositing and withdrawing,
+     * so that a counted balance can always be spent.
+     *
+     * @param player the player
+     * @return whether the inventory is used
+     */
+    static boolean usesInventory(Player player) {
+        return Permissions.USE_VAULT_INVENTORY.isAllowed(player);
+    }
 
-                        continue;
-                    }
+    /**
+     * Whether money in a player's ender chest belongs to their account. Shared by counting, depositing and
+     * withdrawing, so that a counted balance can always be spent.
+     *
+     * @param player the player
+     * @return whether the ender chest is used
+     */
+    static boolean usesEnderChest(Player player) {
+        return Configuration.CONF.useVaultEnderChest && Permissions.USE_VAULT_ENDERCHEST.isAllowed(player);
+    }
 
-                    ItemStack stack        = new ItemStack(denomination.getKey().type);
-                    int       stackSize    = stack.getMaxStackSize();
-                    long      denItemCount = denomination.getValue() > 0 ? remaining / denomination.getValue() : 0;
+    /**
+     * Add what is left of a deposit to the owner's inventories, then keep the rest virtually
+     * or drop it at the owner's feet. Must be run on the thread owning the player.
+     *
+     * @param player      the owner if they are an online player, otherwise null
+     * @param remaining   amount left to add
+     * @param centsStored cents stored on the account when the deposit started, which are part of the amount
+     * @return result of the whole deposit
+     */
+    TransactionResult addToOwner(Player player, long remaining, long centsStored) {
+        remaining = placeWithOwner(player, remaining, centsStored);
 
-                    while (denItemCount > 0) {
-                        int remainderStackSize;
+        if (remaining == 0) {
+            return TransactionResult.SUCCESS;
+        }
+
+        if (Configuration.CONF.dropOverflowingItem && player != null) {
+            for (Denomination denomination : Configuration.CONF.getCurrency().getDenominations()) {
+                if (denomination.getValue() > remaining) {
+                    continue;
+                }
 
-                        if (denItemCount > stackSize) {
-                            remainderStackSize = stackSize;
-                        } else {
-                            remainderStackSize = (int) denItemCount;
-                        }
+                // noinspection ConstantValue
+                if (denomination.getKey().type == null) {
+                    Gringotts.instance.getLogger().warning("Denomination " + denomination.getUnitName() + " has no item type set!");
 
-                        stack.setAmount(remainderStackSize);
+                    continue;
+                }
 
-                        denItemCount -= remainderStackSize;
-                        remaining -= remainderStackSize * denomination.getValue();
+                ItemStack stack        = new ItemStack(denomination.getKey().type);
+                int       stackSize    = stack.getMaxStackSize();
+                long      denItemCount = denomination.getValue() > 0 ? remaining / denomination.getValue() : 0;
 
-                        playerOpt.get().getWorld().dropItem(playerOpt.get().getLocation(), stack);
+                while (denItemCount > 0) {
+                    int remainderStackSize;
+
+                    if (denItemCount > stackSize) {
+                        remainderStackSize = stackSize;
+                    } else {
+                        remainderStackSize = (int) denItemCount;
                     }
+
+                    stack.setAmount(remainderStackSize);
+
+                    denItemCount -= remainderStackSize;
+                    remaining -= remainderStackSize * denomination.getValue();
+
+                    player.getWorld().dropItem(player.getLocation(), stack);
                 }
             }
+        }
 
-            return TransactionResult.INSUFFICIENT_SPACE;
-        };
-
-        return getTimeout(callSync(callMe));
+        return TransactionResult.INSUFFICIENT_SPACE;
     }
 
     /**
-     * Attempt to remove an amount in cents from this account.
-     * If the account contains less than the specified amount, returns false
+     * Add what is left of a deposit to the owner's inventories, then keep the rest virtually if it is less than the
+     * smallest denomination. Must be run on the thread owning the player.
      *
-     * @param amount amount in cents to remove
-     * @return amount actually removed.
+     * @param player      the owner if they are an online player, otherwise null
+     * @param remaining   amount left to add
+     * @param centsStored cents stored on the account when the deposit started, which are part of the amount
+     * @return amount that didn't fit
      */
-    public TransactionResult remove(long amount) {
-        Callable<TransactionResult> callMe = () -> {
-            // Cannot remove negative amount
-            if (amount < 0) {
-                return TransactionResult.ERROR;
-            }
+    long placeWithOwner(Player player, long remaining, long centsStored) {
+        if (player != null) {
+            if (remaining > 0 && usesInventory(player)) {
+                remaining -= new AccountInventory(player.getInventory()).add(remaining);
 
-            // Make sure we have enough to remove
-            if (getBalance() < amount) {
-                return TransactionResult.INSUFFICIENT_FUNDS;
+                if (Configuration.CONF.includeShulkerBoxes && remaining > 0) {
+                    remaining = addToShulkerBox(remaining, player.getInventory());
+                }
             }
+            if (remaining > 0 && usesEnderChest(player)) {
+                remaining -= new AccountInventory(player.getEnderChest()).add(remaining);
 
-            long remaining = amount;
-
-            // Now remove the physical amount left
-            if (Configuration.CONF.useVaultContainer) {
-                for (AccountChest chest : dao.retrieveChests(this)) {
-                    remaining -= chest.remove(remaining);
+                if (Configuration.CONF.includeShulkerBoxes && remaining > 0) {
+                    remaining = addToShulkerBox(remaining, player.getEnderChest());
+                }
+            }
+        }
 
-                    if (remaining <= 0) {
-                        break;
-                    }
+        // allow smallest denom value as threshold for available space
+        // TODO make maximum virtual amount configurable
+        // this is under the assumption that there is always at least 1 denomination
+        List<Denomination> denoms             = Configuration.CONF.getCurrency().getDenominations();
+        long               smallestDenomValue = denoms.get(denoms.size() - 1).getValue();
 
-                    if (Configuration.CONF.includeShulkerBoxes) {
-                        remaining = removeFromShulkerBox(remaining, chest.chest().getInventory());
-                    }
-                }
+        if (remaining < smallestDenomValue) {
+            // the stored cents were placed along with the amount, keep the rest instead of them
+            if (remaining != centsStored) {
+                dao.addCents(this, remaining - centsStored);
             }
 
-            Optional<Player> playerOpt = playerOwner();
+            remaining = 0;
+        }
 
-            if (playerOpt.isPresent()) {
-                Player player = playerOpt.get();
+        return remaining;
+    }
 
-                if (Permissions.USE_VAULT_INVENTORY.isAllowed(player) && remaining > 0) {
-                    remaining -= new AccountInventory(player.getInventory()).remove(remaining);
+    /**
+     * Attempt to remove an amount in cents from this account.
+     * If the account contains less than the specified amount, returns false
+     *
+     * @param amount amount in cents to remove
+     * @return amount actually removed.
+     */
+    public TransactionResult remove(long amount) {
+        return getTimeout(removeAsync(amount));
+    }
 
-                    if (Configuration.CONF.includeShulkerBoxes && remaining > 0) {
-                        remaining = removeFromShulkerBox(remaining, player.getInventory());
-                    }
-                }
-                if (Configuration.CONF.useVaultEnderChest && remaining > 0) {
-                    remaining -= new AccountInventory(player.getEnderChest()).remove(remaining);
+    /**
+     * Attempt to remove an amount in cents from this account, without blocking the calling thread.
+     * The returned future is completed on the server thread, or on Folia on the thread of the region visited last.
+     *
+     * @param amount amount in cents to remove
+     * @return future completed with the result of removing
+     */
+    public CompletableFuture<TransactionResult> removeAsync(long amount) {
+        return withdrawAsync(amount).thenApply(Withdrawal.Outcome::result);
+    }
 
-                    if (Configuration.CONF.includeShulkerBoxes && remaining > 0) {
-                        remaining = removeFromShulkerBox(remaining, player.getEnderChest());
-                    }
-                }
-            }
+    /**
+     * Attempt to remove an amount in cents from this account, without blocking the calling thread.
+     * Each container of the account is scanned once and only the slots actually needed are changed.
+     * The returned future is completed on the server thread, or on Folia on the thread of the region visited last.
+     *
+     * @param amount amount in cents to remove
+     * @return future completed with the result of removing and the balance of this account afterwards
+     */
+    public CompletableFuture<Withdrawal.Outcome> withdrawAsync(long amount) {
+        if (SchedulerUtil.isFolia()) {
+            return regional.withdraw(amount);
+        }
 
-            if (remaining < 0)
-                // took too much, pay back the extra
-                return add(-remaining);
+        return callSync(() -> new Withdrawal(this, dao).remove(amount));
+    }
 
-            if (remaining > 0) {
-                // cannot represent the leftover in our denominations, take them from the virtual reserve
-                long cents = dao.retrieveCents(this);
-                dao.storeCents(this, cents - remaining);
-            }
+    /**
+     * Transfer an amount in cents from this account to another, paying taxes to a collector.
+     *
+     * @param value     amount in cents the recipient receives
+     * @param taxes     amount in cents removed from this account on top of the value
+     * @param recipient account receiving the value
+     * @param collector account receiving the taxes, or null if the taxes are just removed
+     * @return result of the transfer
+     */
+    public TransactionResult transfer(long value, long taxes, GringottsAccount recipient, GringottsAccount collector) {
+        return getTimeout(transferAsync(value, taxes, recipient, collector));
+    }
 
-            return TransactionResult.SUCCESS;
-        };
+    /**
+     * Transfer an amount in cents from this account to another, paying taxes to a collector, without blocking the
+     * calling thread. All legs of the transfer are made in a single hop to the server thread, and written to storage
+     * together. The returned future is completed on the server thread.
+     * <p>
+     * On Folia, where the accounts' containers may be spread over several regions, the legs are made one after the
+     * other, each on the threads owning the containers, and are still written to storage together. Other
+     * transactions of the accounts involved can run between the legs, see {@link org.gestern.gringotts.api.Account#send}.
+     *
+     * @param value     amount in cents the recipient receives
+     * @param taxes     amount in cents removed from this account on top of the value
+     * @param recipient account receiving the value
+     * @param collector account receiving the taxes, or null if the taxes are just removed
+     * @return future completed with the result of the transfer
+     */
+    public CompletableFuture<TransactionResult> transferAsync(long value, long taxes, GringottsAccount recipient, GringottsAccount collector) {
+        if (value < 0 || taxes < 0) {
+            return CompletableFuture.completedFuture(TransactionResult.ERROR);
+        }
 
-        return getTimeout(callSync(callMe));
+        if (SchedulerUtil.isFolia()) {
+            return regional.transfer(value, taxes, recipient, collector);
+        }
+
+        return callSync(() -> dao.atomically(() -> new Transfer(this, value, taxes, recipient, collector, dao).run()));
     }
 
     public long addToShulkerBox(long remaining, Inventory inventory) {
@@ -373,7 +518,7 @@ public class GringottsAccount {
      * @return {@link Optional} of the player owning this account, if the owner is actually a player and online, otherwise
      * empty.
      */
-    private Optional<Player> playerOwner() {
+    Optional<Player> playerOwner() {
         if (owner instanceof PlayerAccountHolder) {
             OfflinePlayer player = ((PlayerAccountHolder) owner).accountHolder;
 
@@ -383,7 +528,101 @@ public class GringottsAccount {
         return Optional.empty();
     }
 
+    /**
+     * Balances in cents of all parts of an account, counted together.
+     *
+     * @param cents      virtual balance
+     * @param vaults     balance of every vault
+     * @param locations  container location of every vault, null where it can't be determined
+     * @param inventory  balance in the owner's inventory
+     * @param enderChest balance in the owner's ender chest
+     */
+    record Counted(long cents, long[] vaults, Location[] locations, long inventory, long enderChest) {
+        long total() {
+            long total = cents + inventory + enderChest;
+
+            for (long vault : vaults) {
+                total += vault;
+            }
+
+            return total;
+        }
+
+        BalanceBreakdown toBreakdown() {
+            GringottsCurrency            currency = Configuration.CONF.getCurrency();
+            List<BalanceBreakdown.Vault> result   = new ArrayList<>(vaults.length);
+
+            for (int i = 0; i < vaults.length; i++) {
+                result.add(new BalanceBreakdown.Vault(locations[i], currency.getDisplayValue(vaults[i])));
+            }
+
+            return new BalanceBreakdown(
+                    currency.getDisplayValue(cents),
+                    List.copyOf(result),
+                    currency.getDisplayValue(inventory),
+                    currency.getDisplayValue(enderChest)
+            );
+        }
+    }
+
+    /**
+     * Count every part of the account's balance in one pass on the server thread.
+     */
+    private CompletableFuture<Counted> countAll() {
+        if (SchedulerUtil.isFolia()) {
+            return regional.count();
+        }
+
+        return callSync(() -> {
+            List<AccountChest> chests    = vaults();
+            long[]             vaults    = new long[chests.size()];
+            Location[]         locations = new Location[chests.size()];
+
+            for (int i = 0; i < vaults.length; i++) {
+                vaults[i] = chests.get(i).balance();
+                locations[i] = chests.get(i).chestLocation();
+            }
+
+            long             inventory  = 0;
+            long             enderChest = 0;
+            Optional<Player> playerOpt  = playerOwner();
+
+            if (playerOpt.isPresent()) {
+                Player player = playerOpt.get();
+
+                if (usesInventory(player)) {
+                    inventory = new AccountInventory(player.getInventory()).balance();
+                }
+
+                if (usesEnderChest(player)) {
+                    enderChest = new AccountInventory(player.getEnderChest()).balance();
+                }
+            }
+
+            return new Counted(dao.retrieveCents(this), vaults, locations, inventory, enderChest);
+        });
+    }
+
+    /**
+     * @return the vaults whose contents count towards this account, in the order of their index
+     */
+    List<AccountChest> vaults() {
+        return Configuration.CONF.useVaultContainer ? new ArrayList<>(dao.retrieveChests(this)) : List.of();
+    }
+
     private CompletableFuture<Long> countChestInventories() {
+        if (SchedulerUtil.isFolia()) {
+            return regional.countVaults().thenApply(vaults -> {
+                long balance = 0;
+
+                for (long vault : vaults) {
+                    balance += vault;
+                }
+
+                return balance;
+            });
+        }
+
         Callable<Long> callMe = () -> {
             Collection<AccountChest> chests  = dao.retrieveChests(this);
             long                     balance = 0;
@@ -401,6 +640,19 @@ public class GringottsAccount {
     }
 
     private CompletableFuture<Long> countChestInventory(int index) {
+        if (SchedulerUtil.isFolia()) {
+            List<AccountChest> chests = vaults();
+
+            if (index >= 0 && index < chests.size()) {
+                return regional.atVault(chests.get(index), chests.get(index)::balance);
+            }
+
+            return regional.atOwner(player -> index == -1
+                    && usesEnderChest(player)
+                    ? new AccountInventory(player.getEnderChest()).balance()
+                    : -1L, -1L);
+        }
+
         Callable<Long> callMe = () -> {
             List<AccountChest> chests = new ArrayList<>(dao.retrieveChests(this));
 
@@ -412,7 +664,7 @@ public class GringottsAccount {
             if (playerOpt.isPresent()) {
                 Player player = playerOpt.get();
 
-                if (Configuration.CONF.useVaultEnderChest && Permissions.USE_VAULT_ENDERCHEST.isAllowed(player) && index == -1) {
+                if (usesEnderChest(player) && index == -1) {
                     return new AccountInventory(player.getEnderChest()).balance();
                 }
             }
@@ -423,6 +675,17 @@ public class GringottsAccount {
     }
 
     private CompletableFuture<Location> countChestLocation(int index) {
+        if (SchedulerUtil.isFolia()) {
+            List<AccountChest> chests = vaults();
+
+            // an unloaded vault can't be looked at from here without loading its chunk
+            if (index >= 0 && index < chests.size() && chests.get(index).isChestLoaded()) {
+                return regional.atVault(chests.get(index), chests.get(index)::chestLocation);
+            }
+
+            return CompletableFuture.completedFuture(null);
+        }
+
         Callable<Location> callMe = () -> {
             List<AccountChest> chests = new ArrayList<>(dao.retrieveChests(this));
 
@@ -436,15 +699,24 @@ public class GringottsAccount {
     }
 
     private CompletableFuture<Collection<AccountChest>> getChests() {
+        if (SchedulerUtil.isFolia()) {
+            // vaults are indexed in memory and don't need any region
+            return CompletableFuture.completedFuture(dao.retrieveChests(this));
+        }
+
         return callSync(() -> dao.retrieveChests(this));
     }
 
     private CompletableFuture<Long> countPlayerInventory() {
+        if (SchedulerUtil.isFolia()) {
+            return regional.atOwner(RegionalOperations::inventoryBalance, 0L);
+        }
+
         Callable<Long> callMe = () -> {
             long balance = 0;
 
             Optional<Player> playerOpt = playerOwner();
-            if (playerOpt.isPresent() && Permissions.USE_VAULT_INVENTORY.isAllowed(playerOpt.get())) {
+            if (playerOpt.isPresent() && usesInventory(playerOpt.get())) {
                 Player player = playerOpt.get();
 
                 balance += new AccountInventory(player.getInventory()).balance();
@@ -456,11 +728,15 @@ public class GringottsAccount {
     }
 
     private CompletableFuture<Long> countPlayerEnderchest() {
+        if (SchedulerUtil.isFolia()) {
+            return regional.atOwner(RegionalOperations::enderChestBalance, 0L);
+        }
+
         Callable<Long> callMe = () -> {
             long balance = 0;
 
             Optional<Player> playerOpt = playerOwner();
-            if (playerOpt.isPresent() && Permissions.USE_VAULT_ENDERCHEST.isAllowed(playerOpt.get())) {
+            if (playerOpt.isPresent() && usesEnderChest(playerOpt.get())) {
                 Player player = playerOpt.get();
 
                 balance += new AccountInventory(player.getEnderChest()).balance();
@@ -471,8 +747,13 @@ public class GringottsAccount {
         return callSync(callMe);
     }
 
-    private CompletableFuture<Long> getCents() {
-        return CompletableFuture.supplyAsync(() -> dao.retrieveCents(this));
+    CompletableFuture<Long> getCents() {
+        // cents are usually cached, don't hand off to another thread just to wait for it from the server thread
+        if (Bukkit.isGlobalTickThread()) {
+            return CompletableFuture.completedFuture(dao.retrieveCents(this));
+        }
+
+        return Gringotts.instance.getStorageExecutor().read(() -> dao.retrieveCents(this));
     }
 
     private <V> V getTimeout(CompletableFuture<V> f) {
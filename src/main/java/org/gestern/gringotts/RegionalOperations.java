@@ -0,0 +1,341 @@
+package org.gestern.gringotts;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.gestern.gringotts.api.TransactionResult;
+import org.gestern.gringotts.data.DAO;
+import org.gestern.gringotts.data.VaultRegistry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Account operations for Folia, where every vault of an account and its owner may belong to a different region, each
+ * ticked by its own thread.
+ * <p>
+ * Counting fans out: every loaded vault is counted on the thread owning its chunk and the owner's inventories on the
+ * thread owning the player, all at the same time. The parts are combined once all of them are done.
+ * <p>
+ * Deposits and withdrawals visit the containers one after the other, each on its owning thread, since the amount
+ * left after one container decides what is done with the next. Transactions of one account are run one at a time,
+ * however many account objects they are made through.
+ * Unloaded vaults only touch their cached balance and pending operations, so they are handled on whatever thread
+ * the operation is on.
+ */
+final class RegionalOperations {
+    /**
+     * Last transaction submitted for each account owner, by {@link VaultRegistry#ownerKey}, until it is done.
+     */
+    private static final Map<String, CompletableFuture<?>> TAILS = new ConcurrentHashMap<>();
+
+    private final GringottsAccount account;
+    private final DAO              dao;
+
+    RegionalOperations(GringottsAccount account, DAO dao) {
+        this.account = account;
+        this.dao = dao;
+    }
+
+    /**
+     * Count every part of the account's balance, in parallel.
+     *
+     * @return future completed with the counted balances
+     */
+    CompletableFuture<GringottsAccount.Counted> count() {
+        List<AccountChest>     chests    = account.vaults();
+        long[]                 vaults    = new long[chests.size()];
+        Location[]             locations = new Location[chests.size()];
+        CompletableFuture<?>[] parts     = new CompletableFuture<?>[chests.size()];
+
+        for (int i = 0; i < parts.length; i++) {
+            int          index = i;
+            AccountChest chest = chests.get(i);
+
+            parts[i] = atVault(chest, () -> {
+                vaults[index] = chest.balance();
+
+                if (chest.isChestLoaded()) {
+                    locations[index] = chest.chestLocation();
+                }
+
+                return null;
+            });
+        }
+
+        CompletableFuture<long[]> owner = atOwner(
+                player -> new long[]{inventoryBalance(player), enderChestBalance(player)},
+                new long[2]
+        );
+        CompletableFuture<Long> cents = account.getCents();
+
+        return CompletableFuture.allOf(parts)
+                .thenCombine(owner, (ignored, inventories) -> inventories)
+                .thenCombine(cents, (inventories, virtual) ->
+                        new GringottsAccount.Counted(virtual, vaults, locations, inventories[0], inventories[1]));
+    }
+
+    /**
+     * Count every vault of the account, in parallel.
+     *
+     * @return future completed with the balance of every vault, in the order of their index
+     */
+    CompletableFuture<long[]> countVaults() {
+        List<AccountChest>     chests = account.vaults();
+        long[]                 vaults = new long[chests.size()];
+        CompletableFuture<?>[] parts  = new CompletableFuture<?>[chests.size()];
+
+        for (int i = 0; i < parts.length; i++) {
+            int          index = i;
+            AccountChest chest = chests.get(i);
+
+            parts[i] = atVault(chest, () -> vaults[index] = chest.balance());
+        }
+
+        return CompletableFuture.allOf(parts).thenApply(ignored -> vaults);
+    }
+
+    /**
+     * Add an amount in cents to the account: first to its vaults, then to the owner's inventories.
+     *
+     * @param amount amount in cents to add
+     * @return future completed with the result of adding
+     */
+    CompletableFuture<TransactionResult> add(long amount) {
+        // Cannot add negative amount
+        if (amount < 0) {
+            return CompletableFuture.completedFuture(TransactionResult.ERROR);
+        }
+
+        return serialized(() -> deposit(amount));
+    }
+
+    /**
+     * Remove an amount in cents from the account: first from its vaults, then from the owner's inventories.
+     *
+     * @param amount amount in cents to remove
+     * @return future completed with the result of removing and the balance of the account afterwards
+     */
+    CompletableFuture<Withdrawal.Outcome> withdraw(long amount) {
+        // Cannot remove negative amount
+        if (amount < 0) {
+            return CompletableFuture.completedFuture(new Withdrawal.Outcome(TransactionResult.ERROR, -1));
+        }
+
+        return serialized(() -> count().thenCompose(counted -> {
+            long balance = counted.total();
+
+            // Make sure we have enough to remove
+            if (balance < amount) {
+                return CompletableFuture.completedFuture(new Withdrawal.Outcome(TransactionResult.INSUFFICIENT_FUNDS, balance));
+            }
+
+            return removeFromVaults(account.vaults(), 0, amount)
+                    .thenCompose(remaining -> remaining > 0 ? atOwner(player -> removeFromOwner(player, remaining), remaining) : CompletableFuture.completedFuture(remaining))
+                    .thenCompose(remaining -> {
+                        if (remaining < 0) {
+                            // took too much, pay back the change, like a withdrawal does on a single thread
+                            return giveChange(-remaining).thenApply(ignored -> TransactionResult.SUCCESS);
+                        }
+
+                        if (remaining > 0) {
+                            // cannot represent the leftover in our denominations, take them from the virtual reserve
+                            dao.addCents(account, -remaining);
+                        }
+
+                        return CompletableFuture.completedFuture(TransactionResult.SUCCESS);
+                    })
+                    .thenApply(result -> new Withdrawal.Outcome(result, balance - amount));
+        }));
+    }
+
+    /**
+     * Transfer an amount from the account to another, paying taxes to a collector. The legs are made one after the
+     * other; if the recipient can't take the value, the account is refunded. All legs are written to storage
+     * together.
+     *
+     * @param value     amount in cents the recipient receives
+     * @param taxes     amount in cents removed on top of the value
+     * @param recipient account receiving the value
+     * @param collector account receiving the taxes, or null
+     * @return future completed with the result of the transfer
+     */
+    CompletableFuture<TransactionResult> transfer(long value, long taxes, GringottsAccount recipient, GringottsAccount collector) {
+        return dao.atomicallyAsync(() -> withdraw(value + taxes).thenCompose(debit -> {
+            if (debit.result() != TransactionResult.SUCCESS) {
+                return CompletableFuture.completedFuture(debit.result());
+            }
+
+            return recipient.addAsync(value).thenCompose(added -> {
+                if (added != TransactionResult.SUCCESS) {
+                    // refund and return reason add failed
+                    return add(value + taxes).thenApply(refunded -> added);
+                }
+
+                if (collector != null && taxes > 0) {
+                    return collector.addAsync(taxes).thenApply(collected -> added);
+                }
+
+                return CompletableFuture.completedFuture(added);
+            });
+        }));
+    }
+
+    /**
+     * Call a function on the thread owning a vault, or right away if the vault is unloaded and only its cached
+     * balance can be used.
+     */
+    <V> CompletableFuture<V> atVault(AccountChest chest, Callable<V> callMe) {
+        if (!chest.isChestLoaded()) {
+            try {
+                return CompletableFuture.completedFuture(callMe.call());
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        return SchedulerUtil.callAt(chest.getLocation(), callMe);
+    }
+
+    /**
+     * Call a function on the thread owning the account's owner, if the owner is an online player.
+     *
+     * @param callMe  function to call with the player
+     * @param offline result when the owner is not an online player, or leaves before the function could run
+     */
+    <V> CompletableFuture<V> atOwner(Function<Player, V> callMe, V offline) {
+        Optional<Player> playerOpt = account.playerOwner();
+
+        if (playerOpt.isEmpty()) {
+            return CompletableFuture.completedFuture(offline);
+        }
+
+        Player player = playerOpt.get();
+
+        return SchedulerUtil.callFor(player, () -> callMe.apply(player), offline);
+    }
+
+    static long inventoryBalance(Player player) {
+        return GringottsAccount.usesInventory(player)
+                ? new AccountInventory(player.getInventory()).balance()
+                : 0;
+    }
+
+    static long enderChestBalance(Player player) {
+        return GringottsAccount.usesEnderChest(player)
+                ? new AccountInventory(player.getEnderChest()).balance()
+                : 0;
+    }
+
+    /**
+     * Run a transaction once the previous transaction of the account's owner is done.
+     */
+    private <V> CompletableFuture<V> serialized(Supplier<CompletableFuture<V>> transaction) {
+        String               key      = VaultRegistry.ownerKey(account.owner.getType(), account.owner.getId());
+        CompletableFuture<V> result   = new CompletableFuture<>();
+        CompletableFuture<?> previous = TAILS.put(key, result);
+
+        (previous != null ? previous : CompletableFuture.completedFuture(null))
+                .handle((ignored, e) -> null)
+                .thenCompose(ignored -> transaction.get())
+                .whenComplete((value, e) -> {
+                    // forget the owner once nothing is queued after this transaction
+                    TAILS.remove(key, result);
+
+                    if (e != null) {
+                        result.completeExceptionally(e);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+
+        return result;
+    }
+
+    /**
+     * Pay back change taken too much: into the vaults and the owner's inventories where it fits, and keep the rest
+     * virtually.
+     */
+    private CompletableFuture<Void> giveChange(long change) {
+        return addToVaults(account.vaults(), 0, change)
+                .thenCompose(left -> left > 0
+                        ? atOwner(player -> account.placeWithOwner(player, left, 0), left)
+                        : CompletableFuture.completedFuture(left))
+                .thenAccept(left -> {
+                    if (left > 0) {
+                        dao.addCents(account, left);
+                    }
+                });
+    }
+
+    private CompletableFuture<TransactionResult> deposit(long amount) {
+        return account.getCents().thenCompose(cents -> addToVaults(account.vaults(), 0, amount + cents)
+                .thenCompose(remaining -> {
+                    Optional<Player> playerOpt = account.playerOwner();
+
+                    if (playerOpt.isEmpty()) {
+                        return CompletableFuture.completedFuture(account.addToOwner(null, remaining, cents));
+                    }
+
+                    Player player = playerOpt.get();
+
+                    // the player may leave in between, keep the whole remainder then
+                    return SchedulerUtil.callFor(player, () -> account.addToOwner(player, remaining, cents), null)
+                            .thenApply(result -> result != null ? result : account.addToOwner(null, remaining, cents));
+                }));
+    }
+
+    private CompletableFuture<Long> addToVaults(List<AccountChest> chests, int index, long remaining) {
+        if (remaining <= 0 || index >= chests.size()) {
+            return CompletableFuture.completedFuture(remaining);
+        }
+
+        AccountChest chest = chests.get(index);
+
+        return atVault(chest, () -> account.addToVault(chest, remaining))
+                .thenCompose(left -> addToVaults(chests, index + 1, left));
+    }
+
+    private CompletableFuture<Long> removeFromVaults(List<AccountChest> chests, int index, long remaining) {
+        if (remaining <= 0 || index >= chests.size()) {
+            return CompletableFuture.completedFuture(remaining);
+        }
+
+        AccountChest chest = chests.get(index);
+
+        return atVault(chest, () -> {
+            long left = remaining - chest.remove(remaining);
+
+            if (left > 0 && Configuration.CONF.includeShulkerBoxes && chest.isChestLoaded()) {
+                left = account.removeFromShulkerBox(left, chest.chest().getInventory());
+            }
+
+            return left;
+        }).thenCompose(left -> removeFromVaults(chests, index + 1, left));
+    }
+
+    private long removeFromOwner(Player player, long remaining) {
+        if (remaining > 0 && GringottsAccount.usesInventory(player)) {
+            remaining -= new AccountInventory(player.getInventory()).remove(remaining);
+
+            if (Configuration.CONF.includeShulkerBoxes && remaining > 0) {
+                remaining = account.removeFromShulkerBox(remaining, player.getInventory());
+            }
+        }
+
+        if (remaining > 0 && GringottsAccount.usesEnderChest(player)) {
+            remaining -= new AccountInventory(player.getEnderChest()).remove(remaining);
+
+            if (Configuration.CONF.includeShulkerBoxes && remaining > 0) {
+                remaining = account.removeFromShulkerBox(remaining, player.getEnderChest());
+            }
+        }
+
+        return remaining;
+    }
+}
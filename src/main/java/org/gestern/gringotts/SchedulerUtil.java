@@ -1,17 +1,116 @@
 package org.gestern.gringotts;
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public final class SchedulerUtil {
+    private static final boolean FOLIA = classExists("io.papermc.paper.threadedregions.RegionizedServer");
 
     private SchedulerUtil() {
     }
 
+    /**
+     * Whether the server ticks regions in parallel, so that blocks and entities may only be accessed from the thread
+     * owning their region.
+     *
+     * @return true when running on Folia
+     */
+    public static boolean isFolia() {
+        return FOLIA;
+    }
+
+    /**
+     * Call a function on the thread owning a location. Runs right away if the current thread owns it.
+     *
+     * @param location location to run at
+     * @param callMe   function to call
+     * @param <V>      result type
+     * @return future completed with the result, on the thread owning the location
+     */
+    public static <V> CompletableFuture<V> callAt(Location location, Callable<V> callMe) {
+        CompletableFuture<V> f = new CompletableFuture<>();
+
+        if (Bukkit.isOwnedByCurrentRegion(location)) {
+            complete(f, callMe);
+        } else {
+            Bukkit.getRegionScheduler().execute(Gringotts.instance, location, () -> complete(f, callMe));
+        }
+
+        return f;
+    }
+
+    /**
+     * Call a function on the thread owning an entity. Runs right away if the current thread owns it.
+     *
+     * @param entity  entity to run for
+     * @param callMe  function to call
+     * @param retired result if the entity is removed before the function could run, e.g. because the player left
+     * @param <V>     result type
+     * @return future completed with the result, on the thread owning the entity
+     */
+    public static <V> CompletableFuture<V> callFor(Entity entity, Callable<V> callMe, V retired) {
+        CompletableFuture<V> f = new CompletableFuture<>();
+
+        if (Bukkit.isOwnedByCurrentRegion(entity)) {
+            complete(f, callMe);
+        } else if (!entity.getScheduler().execute(Gringotts.instance, () -> complete(f, callMe), () -> f.complete(retired), 1L)) {
+            f.complete(retired);
+        }
+
+        return f;
+    }
+
+    private static <V> void complete(CompletableFuture<V> f, Callable<V> callMe) {
+        try {
+            f.complete(callMe.call());
+        } catch (Exception e) {
+            f.completeExceptionally(e);
+        }
+    }
+
+    private static boolean classExists(String name) {
+        try {
+            Class.forName(name);
+
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
     public static void runGlobal(Runnable runnable) {
         Bukkit.getGlobalRegionScheduler().run(Gringotts.instance, task -> runnable.run());
     }
 
+    public static void runAsync(Runnable runnable) {
+        Bukkit.getAsyncScheduler().runNow(Gringotts.instance, task -> runnable.run());
+    }
+
+    public static ScheduledTask runAsyncAtFixedRate(Runnable runnable, long period, TimeUnit unit) {
+        return Bukkit.getAsyncScheduler().runAtFixedRate(
+                Gringotts.instance,
+                task -> runnable.run(),
+                period,
+                period,
+                unit
+        );
+    }
+
+    public static ScheduledTask runAsyncLater(Runnable runnable, long delay, TimeUnit unit) {
+        return Bukkit.getAsyncScheduler().runDelayed(Gringotts.instance, task -> runnable.run(), delay, unit);
+    }
+
+    public static void runAt(World world, int chunkX, int chunkZ, Runnable runnable) {
+        Bukkit.getRegionScheduler().execute(Gringotts.instance, world, chunkX, chunkZ, runnable);
+    }
+
     public static void runNextTick(Location location, Runnable runnable) {
         if (location == null || location.getWorld() == null) {
             runGlobal(runnable);
@@ -0,0 +1,132 @@
+package org.gestern.gringotts;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs account operations submitted from other threads on the server thread, in batches.
+ * <p>
+ * Instead of scheduling a task for every operation, operations are queued and all of them are drained by a single
+ * task per tick. Each drain groups the queued operations by account, so that the operations of one account run
+ * back to back and in the order they were submitted.
+ * <p>
+ * A drain stops once it used up the configured time budget, so a burst of operations can't stall the tick.
+ * Whatever is left runs first in the next tick.
+ */
+public final class TransactionQueue {
+    private final Queue<Operation> submitted = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger    depth     = new AtomicInteger();
+    private final AtomicBoolean    scheduled = new AtomicBoolean();
+
+    /**
+     * Operations that didn't fit into the previous drain's budget. Only accessed by the draining thread.
+     */
+    private final Deque<Operation> carried = new ArrayDeque<>();
+
+    private volatile int  lastDrained;
+    private volatile long lastDrainNanos;
+
+    private record Operation(String account, Runnable task) {
+    }
+
+    /**
+     * Queue an operation to run on the server thread.
+     *
+     * @param account key of the account the operation belongs to
+     * @param task    the operation
+     */
+    public void submit(String account, Runnable task) {
+        submitted.add(new Operation(account, task));
+        depth.incrementAndGet();
+
+        schedule();
+    }
+
+    /**
+     * @return number of operations waiting to run
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * @return number of operations run by the last drain
+     */
+    public int getLastDrained() {
+        return lastDrained;
+    }
+
+    /**
+     * @return time in nanoseconds the last drain took
+     */
+    public long getLastDrainNanos() {
+        return lastDrainNanos;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            SchedulerUtil.runGlobal(this::drain);
+        }
+    }
+
+    /**
+     * Run queued operations until the tick budget is used up.
+     */
+    private void drain() {
+        scheduled.set(false);
+
+        long start    = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(Configuration.CONF.transactionTickBudget);
+        int  drained  = 0;
+
+        // carried over operations were submitted before anything still in the queue, run them first
+        Map<String, List<Operation>> byAccount = new LinkedHashMap<>();
+
+        while (!carried.isEmpty()) {
+            group(byAccount, carried.poll());
+        }
+
+        Operation operation;
+
+        while ((operation = submitted.poll()) != null) {
+            group(byAccount, operation);
+        }
+
+        for (List<Operation> operations : byAccount.values()) {
+            for (Operation queued : operations) {
+                if (drained > 0 && System.nanoTime() >= deadline) {
+                    carried.add(queued);
+
+                    continue;
+                }
+
+                try {
+                    queued.task().run();
+                } finally {
+                    drained++;
+                    depth.decrementAndGet();
+                }
+            }
+        }
+
+        lastDrained = drained;
+        lastDrainNanos = System.nanoTime() - start;
+
+        if (!carried.isEmpty() || !submitted.isEmpty()) {
+            schedule();
+        }
+    }
+
+    private static void group(Map<String, List<Operation>> byAccount, Operation operation) {
+        byAccount.computeIfAbsent(operation.account(), account -> new ArrayList<>()).add(operation);
+    }
+}
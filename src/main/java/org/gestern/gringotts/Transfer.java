@@ -0,0 +1,72 @@
+package org.gestern.gringotts;
+
+import org.gestern.gringotts.api.TransactionResult;
+import org.gestern.gringotts.data.DAO;
+
+/**
+ * Moves an amount from one account to another, with taxes going to an optional collector, in a single pass.
+ * <p>
+ * The sender is debited for the value and the taxes at once, with a single scan of its containers. If the recipient
+ * can't hold the value, whatever was placed is taken back and the sender is refunded, so that either every leg of
+ * the transfer happens or none does. Nothing is dropped at anyone's feet along the way.
+ * <p>
+ * Must be run on the server thread, within {@link DAO#atomically}, so the legs are written to storage together.
+ */
+public final class Transfer {
+    private final GringottsAccount from;
+    private final long             value;
+    private final long             taxes;
+    private final GringottsAccount to;
+    private final GringottsAccount collector;
+    private final DAO              dao;
+
+    Transfer(GringottsAccount from, long value, long taxes, GringottsAccount to, GringottsAccount collector, DAO dao) {
+        this.from = from;
+        this.value = value;
+        this.taxes = taxes;
+        this.to = to;
+        this.collector = collector;
+        this.dao = dao;
+    }
+
+    /**
+     * Make the transfer.
+     *
+     * @return result of the transfer: success, or why the sender couldn't pay or the recipient couldn't receive
+     */
+    TransactionResult run() {
+        Withdrawal.Outcome debit = new Withdrawal(from, dao).remove(value + taxes);
+
+        if (debit.result() != TransactionResult.SUCCESS) {
+            return debit.result();
+        }
+
+        long left = to.place(value);
+
+        if (left > 0) {
+            // recipient can't hold the value, undo the credit and the debit
+            if (value > left) {
+                new Withdrawal(to, dao).remove(value - left);
+            }
+
+            refund(from, value + taxes);
+
+            return TransactionResult.INSUFFICIENT_SPACE;
+        }
+
+        if (collector != null && taxes > 0) {
+            collector.deposit(taxes);
+        }
+
+        return TransactionResult.SUCCESS;
+    }
+
+    private void refund(GringottsAccount account, long amount) {
+        long left = account.place(amount);
+
+        // the sender's containers were just emptied, but keep anything that doesn't fit virtually rather than lose it
+        if (left > 0) {
+            dao.addCents(account, left);
+        }
+    }
+}
@@ -15,7 +15,6 @@ import org.bukkit.event.inventory.InventoryType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -53,10 +52,10 @@ public final class Util {
             return player;
         }
 
-        for (OfflinePlayer offlinePlayer : Bukkit.getOfflinePlayers()) {
-            if (Objects.requireNonNull(offlinePlayer.getName()).equalsIgnoreCase(playerName)) {
-                return offlinePlayer;
-            }
+        UUID knownUuid = Gringotts.instance.getPlayerNameIndex().getId(playerName);
+
+        if (knownUuid != null) {
+            return Bukkit.getOfflinePlayer(knownUuid);
         }
 
         try {
@@ -159,8 +158,17 @@ public final class Util {
             return null;
         }
 
+        return chestBlock(sign.getBlock());
+    }
+
+    /**
+     * Find a valid container block for a given sign block, if it exists.
+     *
+     * @param signBlock block of the sign
+     * @return container block for the sign, or null if there is no sign there or it has no container
+     */
+    public static Block chestBlock(Block signBlock) {
         // is sign attached to a valid vault container?
-        Block signBlock = sign.getBlock();
         BlockData blockData = signBlock.getBlockData();
 
         if (!(blockData instanceof WallSign signData)) {
@@ -0,0 +1,226 @@
+package org.gestern.gringotts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bukkit.World;
+import org.gestern.gringotts.data.VaultRegistry;
+
+/**
+ * Compares the cached balances of vaults loaded from storage with their contents, a few vaults per tick.
+ * <p>
+ * Vaults are only checked while their chunk is loaded. Vaults in loaded chunks are queued as soon as they are loaded
+ * from storage, all others once their chunk is loaded and its pending operations are applied. Chunks are never
+ * loaded just to check a vault. Corrected balances go through the DAO's vault balance writer, which writes them in
+ * batches.
+ * <p>
+ * Each tick checks queued vaults until the configured time budget is used up; whatever is left is checked in the
+ * next tick. On Folia, vaults are checked on the threads owning their chunks. Every tick then hands out as many
+ * vaults as fit into the budget at the average time a check took so far, once the previous round is done.
+ */
+public final class VaultReconciler {
+    /**
+     * Vaults handed out in the first round on Folia, before the time a check takes is known.
+     */
+    private static final int FIRST_ROUND = 64;
+
+    private final Queue<AccountChest> queue     = new ConcurrentLinkedQueue<>();
+    private final Set<AccountChest>   queued    = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean       scheduled = new AtomicBoolean();
+
+    /**
+     * Chunks of the current round on Folia that are not checked yet.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong checked    = new AtomicLong();
+    private final AtomicLong corrected  = new AtomicLong();
+    private final AtomicLong checkNanos = new AtomicLong();
+
+    private volatile int lastChecked;
+
+    private record ChunkKey(UUID world, long chunk) {
+    }
+
+    /**
+     * Queue vaults to be checked. Vaults that were checked already or whose chunk is not loaded are skipped, the
+     * latter are submitted again when their chunk is loaded.
+     *
+     * @param chests the vaults
+     */
+    public void submit(Collection<AccountChest> chests) {
+        boolean added = false;
+
+        for (AccountChest chest : chests) {
+            if (!chest.isVerified() && chest.isChestLoaded() && queued.add(chest)) {
+                queue.add(chest);
+                added = true;
+            }
+        }
+
+        if (added) {
+            schedule();
+        }
+    }
+
+    /**
+     * @return number of vaults waiting for their turn
+     */
+    public int getQueued() {
+        return queued.size();
+    }
+
+    /**
+     * @return number of vaults checked since startup
+     */
+    public long getChecked() {
+        return checked.get();
+    }
+
+    /**
+     * @return number of checked vaults whose cached balance had to be corrected
+     */
+    public long getCorrected() {
+        return corrected.get();
+    }
+
+    /**
+     * @return number of vaults checked in the last tick, or handed out to be checked on Folia
+     */
+    public int getLastChecked() {
+        return lastChecked;
+    }
+
+    /**
+     * @return average time in nanoseconds checking a vault took, 0 if none was checked yet
+     */
+    public long getAverageCheckNanos() {
+        long count = checked.get();
+
+        return count == 0 ? 0 : checkNanos.get() / count;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            SchedulerUtil.runGlobal(this::tick);
+        }
+    }
+
+    private void tick() {
+        scheduled.set(false);
+
+        if (SchedulerUtil.isFolia()) {
+            dispatch();
+        } else {
+            drain();
+        }
+
+        if (!queue.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * Check queued vaults on the server thread until the tick budget is used up.
+     */
+    private void drain() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Configuration.CONF.reconcileTickBudget);
+        int  count    = 0;
+
+        AccountChest chest;
+
+        while ((count == 0 || System.nanoTime() < deadline) && (chest = poll()) != null) {
+            check(chest);
+            count++;
+        }
+
+        lastChecked = count;
+    }
+
+    /**
+     * Hand out the vaults of the next round to the threads owning their chunks, grouped by chunk.
+     */
+    private void dispatch() {
+        // the previous round is still being checked
+        if (inFlight.get() > 0) {
+            return;
+        }
+
+        long average = getAverageCheckNanos();
+        long budget  = TimeUnit.MILLISECONDS.toNanos(Configuration.CONF.reconcileTickBudget);
+        long round   = average == 0 ? FIRST_ROUND : Math.max(1, budget / average);
+
+        Map<ChunkKey, List<AccountChest>> byChunk = new LinkedHashMap<>();
+        AccountChest                      chest;
+
+        for (long i = 0; i < round && (chest = poll()) != null; i++) {
+            ChunkKey key = new ChunkKey(chest.getWorldId(), VaultRegistry.chunkKey(chest.getX() >> 4, chest.getZ() >> 4));
+
+            byChunk.computeIfAbsent(key, k -> new ArrayList<>()).add(chest);
+        }
+
+        inFlight.set(byChunk.size());
+        lastChecked = (int) byChunk.values().stream().mapToLong(List::size).sum();
+
+        for (List<AccountChest> chests : byChunk.values()) {
+            AccountChest first = chests.get(0);
+            World        world = first.getWorld();
+
+            if (world == null) {
+                inFlight.decrementAndGet();
+
+                continue;
+            }
+
+            SchedulerUtil.runAt(world, first.getX() >> 4, first.getZ() >> 4, () -> {
+                try {
+                    chests.forEach(this::check);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    private AccountChest poll() {
+        AccountChest chest = queue.poll();
+
+        if (chest != null) {
+            queued.remove(chest);
+        }
+
+        return chest;
+    }
+
+    /**
+     * Check a vault, unless its chunk was unloaded or the vault removed in the meantime.
+     * Must be run on the thread owning the vault's chunk.
+     */
+    private void check(AccountChest chest) {
+        if (chest.isVerified() || !chest.isChestLoaded()
+                || Gringotts.instance.getDao().getAccountChest(chest.getLocation()) != chest) {
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        if (chest.verify()) {
+            corrected.incrementAndGet();
+        }
+
+        checkNanos.addAndGet(System.nanoTime() - start);
+        checked.incrementAndGet();
+    }
+}
@@ -0,0 +1,395 @@
+package org.gestern.gringotts;
+
+import org.bukkit.Tag;
+import org.bukkit.block.ShulkerBox;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.BlockStateMeta;
+import org.gestern.gringotts.api.TransactionResult;
+import org.gestern.gringotts.currency.Denomination;
+import org.gestern.gringotts.currency.GringottsCurrency;
+import org.gestern.gringotts.data.DAO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Removes an amount from an account in a single pass over its storage.
+ * <p>
+ * Every container of the account (vaults, their shulker boxes, the owner's inventory and ender chest) is scanned once
+ * to build an in-memory picture of the currency it holds. From that, the balance check and a removal plan are
+ * computed without touching any inventory. Only then is the plan committed, touching each affected slot once.
+ * Change for an overshooting denomination is paid back into the container it was taken from, within the same call.
+ * <p>
+ * Must be run on the server thread.
+ */
+public final class Withdrawal {
+    private final GringottsAccount  account;
+    private final DAO               dao;
+    private final GringottsCurrency currency = Configuration.CONF.getCurrency();
+
+    private final List<Pool>      pools  = new ArrayList<>();
+    private final List<VaultPool> vaults = new ArrayList<>();
+
+    Withdrawal(GringottsAccount account, DAO dao) {
+        this.account = account;
+        this.dao = dao;
+    }
+
+    /**
+     * Remove the given amount from the account.
+     *
+     * @param amount amount in cents to remove
+     * @return result of the removal and the account's balance afterwards
+     */
+    Outcome remove(long amount) {
+        // Cannot remove negative amount
+        if (amount < 0) {
+            return new Outcome(TransactionResult.ERROR, -1);
+        }
+
+        long cents   = dao.retrieveCents(account);
+        long balance = scan() + cents;
+
+        // Make sure we have enough to remove
+        if (balance < amount) {
+            return new Outcome(TransactionResult.INSUFFICIENT_FUNDS, balance);
+        }
+
+        long remaining = amount;
+
+        for (Pool pool : pools) {
+            if (remaining <= 0) {
+                break;
+            }
+
+            remaining -= pool.plan(remaining);
+        }
+
+        for (Pool pool : pools) {
+            pool.commit();
+        }
+
+        if (remaining < 0) {
+            // took too much, pay back the change into the container that overshot
+            long change = -remaining;
+
+            for (int i = pools.size() - 1; i >= 0 && change > 0; i--) {
+                if (pools.get(i).planned > 0) {
+                    change -= pools.get(i).giveChange(change);
+
+                    break;
+                }
+            }
+
+            // change that doesn't fit is kept virtually
+            if (change > 0) {
+                dao.addCents(account, change);
+            }
+        } else if (remaining > 0) {
+            // cannot represent the leftover in our denominations, take them from the virtual reserve
+            dao.addCents(account, -remaining);
+        }
+
+        // update the cached balance of every loaded vault that changed, once
+        for (VaultPool vault : vaults) {
+            if (vault.touched) {
+                vault.chest.setCachedBalance(vault.balance);
+            }
+        }
+
+        return new Outcome(TransactionResult.SUCCESS, balance - amount);
+    }
+
+    /**
+     * Collect the currency held by the account, in the order it is spent.
+     *
+     * @return total value held in the account's containers
+     */
+    private long scan() {
+        long total = 0;
+
+        if (Configuration.CONF.useVaultContainer) {
+            for (AccountChest chest : dao.retrieveChests(account)) {
+                if (!chest.isChestLoaded()) {
+                    total += addPool(new Pool(chest, chest.getCachedBalance()));
+
+                    continue;
+                }
+
+                Inventory inventory = chest.validInventory();
+
+                if (inventory != null) {
+                    VaultPool vault = new VaultPool(chest);
+
+                    vaults.add(vault);
+                    total += addPools(inventory, vault);
+                }
+            }
+        }
+
+        Optional<Player> playerOpt = account.playerOwner();
+
+        if (playerOpt.isPresent()) {
+            Player player = playerOpt.get();
+
+            if (GringottsAccount.usesInventory(player)) {
+                total += addPools(player.getInventory(), null);
+            }
+
+            if (GringottsAccount.usesEnderChest(player)) {
+                total += addPools(player.getEnderChest(), null);
+            }
+        }
+
+        return total;
+    }
+
+    private long addPools(Inventory inventory, VaultPool vault) {
+        Pool top   = new Pool(inventory, vault);
+        long total = addPool(top);
+
+        if (!Configuration.CONF.includeShulkerBoxes) {
+            return total;
+        }
+
+        ItemStack[] contents = inventory.getContents();
+
+        for (int slot = 0; slot < contents.length; slot++) {
+            ItemStack item = contents[slot];
+
+            if (item != null
+                    && Tag.SHULKER_BOXES.isTagged(item.getType())
+                    && item.getItemMeta() instanceof BlockStateMeta meta
+                    && meta.getBlockState() instanceof ShulkerBox shulkerBox) {
+                total += addPool(new Pool(shulkerBox.getInventory(), vault, item, meta, shulkerBox));
+            }
+        }
+
+        return total;
+    }
+
+    private long addPool(Pool pool) {
+        long value = pool.scan();
+
+        if (value > 0) {
+            pools.add(pool);
+        }
+
+        if (pool.vault != null) {
+            pool.vault.balance += value;
+        }
+
+        return value;
+    }
+
+    /**
+     * Result of a withdrawal.
+     *
+     * @param result  whether the amount was removed, or why not
+     * @param balance balance of the account after the withdrawal, or the unchanged balance if it failed
+     */
+    public record Outcome(TransactionResult result, long balance) {
+    }
+
+    /**
+     * Balance of a loaded vault over all its pools, kept up to date while committing.
+     */
+    private static final class VaultPool {
+        private final AccountChest chest;
+        private long balance;
+        private boolean touched;
+
+        private VaultPool(AccountChest chest) {
+            this.chest = chest;
+        }
+    }
+
+    private static final class Slot {
+        private final int          index;
+        private final ItemStack    stack;
+        private final Denomination denomination;
+        private int                take;
+
+        private Slot(int index, ItemStack stack, Denomination denomination) {
+            this.index = index;
+            this.stack = stack;
+            this.denomination = denomination;
+        }
+    }
+
+    /**
+     * A set of slots that currency can be taken from: a container, a shulker box inside a container,
+     * or the cached balance of an unloaded vault.
+     */
+    private final class Pool {
+        private final Inventory      inventory;
+        private final VaultPool      vault;
+        private final ItemStack      shulkerItem;
+        private final BlockStateMeta shulkerMeta;
+        private final ShulkerBox     shulkerBox;
+        private final AccountChest   unloaded;
+        private final long           unloadedBalance;
+
+        private final List<Slot> slots = new ArrayList<>();
+        private long planned;
+
+        private Pool(Inventory inventory, VaultPool vault) {
+            this(inventory, vault, null, null, null);
+        }
+
+        private Pool(Inventory inventory, VaultPool vault, ItemStack shulkerItem, BlockStateMeta shulkerMeta, ShulkerBox shulkerBox) {
+            this.inventory = inventory;
+            this.vault = vault;
+            this.shulkerItem = shulkerItem;
+            this.shulkerMeta = shulkerMeta;
+            this.shulkerBox = shulkerBox;
+            this.unloaded = null;
+            this.unloadedBalance = 0;
+        }
+
+        private Pool(AccountChest unloaded, long balance) {
+            this.inventory = null;
+            this.vault = null;
+            this.shulkerItem = null;
+            this.shulkerMeta = null;
+            this.shulkerBox = null;
+            this.unloaded = unloaded;
+            this.unloadedBalance = balance;
+        }
+
+        private long scan() {
+            if (inventory == null) {
+                return Math.max(unloadedBalance, 0);
+            }
+
+            long        value    = 0;
+            ItemStack[] contents = inventory.getContents();
+
+            for (int index = 0; index < contents.length; index++) {
+                ItemStack stack = contents[index];
+
+                if (stack == null) {
+                    continue;
+                }
+
+                Denomination denomination = currency.getDenominationOf(stack);
+
+                if (denomination != null) {
+                    slots.add(new Slot(index, stack, denomination));
+                    value += denomination.getValue() * stack.getAmount();
+                }
+            }
+
+            return value;
+        }
+
+        /**
+         * Plan taking up to the given amount from this pool, smallest denominations first.
+         * Rounds up to whole items, so the planned value may exceed the requested amount.
+         *
+         * @param amount amount to take
+         * @return value planned to be taken
+         */
+        private long plan(long amount) {
+            if (inventory == null) {
+                planned = Math.min(amount, Math.max(unloadedBalance, 0));
+
+                return planned;
+            }
+
+            long remaining = amount;
+            List<Denomination> denominations = currency.getDenominations();
+
+            for (int d = denominations.size() - 1; d >= 0 && remaining > 0; d--) {
+                Denomination denomination = denominations.get(d);
+
+                for (Slot slot : slots) {
+                    if (remaining <= 0) {
+                        break;
+                    }
+
+                    if (slot.denomination != denomination) {
+                        continue;
+                    }
+
+                    // take 1 more than necessary if it doesn't round. the change is paid back later
+                    long needed = (remaining + denomination.getValue() - 1) / denomination.getValue();
+
+                    slot.take = (int) Math.min(needed, slot.stack.getAmount());
+                    remaining -= slot.take * denomination.getValue();
+                }
+            }
+
+            planned = amount - remaining;
+
+            return planned;
+        }
+
+        private void commit() {
+            if (planned <= 0) {
+                return;
+            }
+
+            if (inventory == null) {
+                unloaded.remove(planned);
+
+                return;
+            }
+
+            for (Slot slot : slots) {
+                if (slot.take <= 0) {
+                    continue;
+                }
+
+                if (slot.take >= slot.stack.getAmount()) {
+                    inventory.clear(slot.index);
+                } else {
+                    slot.stack.setAmount(slot.stack.getAmount() - slot.take);
+                    inventory.setItem(slot.index, slot.stack);
+                }
+            }
+
+            if (vault != null) {
+                vault.balance -= planned;
+                vault.touched = true;
+            }
+
+            writeShulker();
+        }
+
+        /**
+         * Put change back into this pool.
+         *
+         * @param change value to put back
+         * @return value actually put back
+         */
+        private long giveChange(long change) {
+            if (inventory == null) {
+                // an unloaded vault only had its exact share taken, never more
+                return 0;
+            }
+
+            long given = new AccountInventory(inventory).add(change);
+
+            if (vault != null) {
+                vault.balance += given;
+                vault.touched = true;
+            }
+
+            writeShulker();
+
+            return given;
+        }
+
+        private void writeShulker() {
+            if (shulkerBox != null) {
+                shulkerBox.update();
+                shulkerMeta.setBlockState(shulkerBox);
+                shulkerItem.setItemMeta(shulkerMeta);
+            }
+        }
+    }
+}
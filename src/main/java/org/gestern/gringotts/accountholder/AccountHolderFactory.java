@@ -1,16 +1,16 @@
 package org.gestern.gringotts.accountholder;
 
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
+import org.gestern.gringotts.Gringotts;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -145,14 +145,9 @@ public class AccountHolderFactory implements Iterable<AccountHolderProvider> {
             } catch (IllegalArgumentException ignored) {}
 
             // don't use getOfflinePlayer(String) because that will do a blocking web request
-            // rather iterate this array, should be quick enough
-            for (OfflinePlayer p : Bukkit.getOfflinePlayers()) {
-                if (uuidOrName.equals(p.getName())) {
-                    return getAccountHolder(p);
-                }
-            }
+            UUID knownUuid = Gringotts.instance.getPlayerNameIndex().getId(uuidOrName);
 
-            return null;
+            return knownUuid != null ? getAccountHolder(knownUuid) : null;
         }
 
         @Override
@@ -194,7 +189,7 @@ public class AccountHolderFactory implements Iterable<AccountHolderProvider> {
          */
         @Override
         public @NotNull Set<String> getAccountNames() {
-            return Stream.of(Bukkit.getOfflinePlayers()).map(OfflinePlayer::getName).collect(Collectors.toSet());
+            return new HashSet<>(Gringotts.instance.getPlayerNameIndex().getNames());
         }
     }
 }
@@ -0,0 +1,91 @@
+package org.gestern.gringotts.accountholder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.gestern.gringotts.Gringotts;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Completes account names from sorted in-memory indexes, so completing a prefix only visits the matching names
+ * and never costs time proportional to the number of accounts.
+ * <p>
+ * Player names come from the {@link PlayerNameIndex}, which is kept up to date as players join. Other account
+ * holder types don't announce new accounts, so their names are indexed from
+ * {@link AccountHolderProvider#getAccountNames()} and re-indexed at most every {@link #REFRESH_MILLIS}.
+ * <p>
+ * Safe to use from any thread.
+ */
+public final class AccountNameCompleter {
+    private static final long REFRESH_MILLIS = 30_000;
+
+    private final Map<String, TypeNames> byType = new ConcurrentHashMap<>();
+
+    /**
+     * Names of one account holder type, by lower case name.
+     */
+    private record TypeNames(NavigableMap<String, String> names, long indexedAt) {
+    }
+
+    /**
+     * Complete an account argument: a player name, or {@code type:name} for other account holder types.
+     *
+     * @param arg   the partial argument
+     * @param limit maximum number of completions
+     * @return the completions, in alphabetical order
+     */
+    public @NotNull List<String> complete(@NotNull String arg, int limit) {
+        int separator = arg.indexOf(':');
+
+        if (separator < 0) {
+            return Gringotts.instance.getPlayerNameIndex().complete(arg, limit);
+        }
+
+        String type   = arg.substring(0, separator).toUpperCase(Locale.ROOT);
+        String prefix = arg.substring(separator + 1).toLowerCase(Locale.ROOT);
+
+        Optional<AccountHolderProvider> provider = Gringotts.instance.getAccountHolderFactory().getProvider(type);
+
+        if (provider.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<String> matches = new ArrayList<>();
+
+        for (Map.Entry<String, String> entry : namesOf(type, provider.get()).tailMap(prefix).entrySet()) {
+            if (matches.size() >= limit || !entry.getKey().startsWith(prefix)) {
+                break;
+            }
+
+            matches.add(type + ":" + entry.getValue());
+        }
+
+        return matches;
+    }
+
+    private NavigableMap<String, String> namesOf(String type, AccountHolderProvider provider) {
+        long      now   = System.currentTimeMillis();
+        TypeNames names = byType.get(type);
+
+        if (names == null || now - names.indexedAt() > REFRESH_MILLIS) {
+            NavigableMap<String, String> sorted = new TreeMap<>();
+
+            for (String name : provider.getAccountNames()) {
+                if (name != null) {
+                    sorted.put(name.toLowerCase(Locale.ROOT), name);
+                }
+            }
+
+            names = new TypeNames(sorted, now);
+            byType.put(type, names);
+        }
+
+        return names.names();
+    }
+}
@@ -0,0 +1,217 @@
+package org.gestern.gringotts.accountholder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.gestern.gringotts.SchedulerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Case-insensitive index from player names to their unique ids.
+ * <p>
+ * Looking up a name by iterating {@link Bukkit#getOfflinePlayers()} reads the whole playerdata directory, so name
+ * based lookups go through this index instead. It is persisted in a file in the plugin folder and only seeded from
+ * the offline players when that file doesn't exist yet, off the server thread. Afterwards it is kept up to date as
+ * players join, including when they changed their name.
+ * <p>
+ * Names are kept sorted, so completing a prefix only visits the matching names.
+ */
+public final class PlayerNameIndex {
+    private static final long SAVE_DELAY_SECONDS = 5;
+
+    private final Path   file;
+    private final Logger log;
+
+    private final ConcurrentSkipListMap<String, UUID> byName = new ConcurrentSkipListMap<>();
+    private final Map<UUID, String>                   byId   = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private volatile boolean    dirty;
+
+    public PlayerNameIndex(@NotNull Path file, @NotNull Logger log) {
+        this.file = file;
+        this.log = log;
+    }
+
+    /**
+     * Load the index from its file, or seed it from the server's offline players if there is none.
+     * Reads from disk, so must not be run on the server thread.
+     */
+    public void load() {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(' ');
+
+                if (separator <= 0) {
+                    continue;
+                }
+
+                try {
+                    putIfAbsent(UUID.fromString(line.substring(0, separator)), line.substring(separator + 1));
+                } catch (IllegalArgumentException ignored) {
+                }
+            }
+
+            log.info("Loaded " + byId.size() + " player names.");
+
+            return;
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to read player names, rebuilding them", e);
+        }
+
+        for (OfflinePlayer player : Bukkit.getOfflinePlayers()) {
+            if (player.getName() != null) {
+                putIfAbsent(player.getUniqueId(), player.getName());
+            }
+        }
+
+        log.info("Indexed " + byId.size() + " player names.");
+
+        dirty = true;
+        save();
+    }
+
+    /**
+     * Record the current name of a player, replacing the name they were known by before.
+     *
+     * @param player the player
+     */
+    public void update(@NotNull Player player) {
+        UUID   id   = player.getUniqueId();
+        String name = player.getName();
+
+        synchronized (this) {
+            String previous = byId.put(id, name);
+
+            if (name.equals(previous)) {
+                return;
+            }
+
+            if (previous != null) {
+                byName.remove(previous.toLowerCase(Locale.ROOT), id);
+            }
+
+            UUID replaced = byName.put(name.toLowerCase(Locale.ROOT), id);
+
+            // someone else used to have this name
+            if (replaced != null && !replaced.equals(id)) {
+                byId.remove(replaced, name);
+            }
+        }
+
+        dirty = true;
+
+        if (saveScheduled.compareAndSet(false, true)) {
+            SchedulerUtil.runAsyncLater(this::save, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Get the unique id of the player last known by a name.
+     *
+     * @param name the player name, case-insensitive
+     * @return the unique id, or null if no player by that name is known
+     */
+    public @Nullable UUID getId(@NotNull String name) {
+        return byName.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Get the names of known players starting with a prefix, in alphabetical order.
+     *
+     * @param prefix the prefix, case-insensitive
+     * @param limit  maximum number of names to return
+     * @return the matching names
+     */
+    public @NotNull List<String> complete(@NotNull String prefix, int limit) {
+        String       lower   = prefix.toLowerCase(Locale.ROOT);
+        List<String> matches = new ArrayList<>(Math.min(limit, 16));
+
+        for (Map.Entry<String, UUID> entry : byName.tailMap(lower).entrySet()) {
+            if (matches.size() >= limit || !entry.getKey().startsWith(lower)) {
+                break;
+            }
+
+            String name = byId.get(entry.getValue());
+
+            if (name != null) {
+                matches.add(name);
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * @return the names of all known players
+     */
+    public @NotNull Collection<String> getNames() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    /**
+     * Write the index to its file, if it changed. Writes to a temporary file first,
+     * so the index is never left half written.
+     */
+    public synchronized void save() {
+        saveScheduled.set(false);
+
+        if (!dirty) {
+            return;
+        }
+
+        dirty = false;
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<UUID, String> entry : byId.entrySet()) {
+                    writer.write(entry.getKey().toString());
+                    writer.write(' ');
+                    writer.write(entry.getValue());
+                    writer.newLine();
+                }
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+
+            log.log(Level.WARNING, "Failed to write player names", e);
+        }
+    }
+
+    private synchronized void putIfAbsent(UUID id, String name) {
+        // names that were already updated from a join are newer than the stored ones
+        if (byId.putIfAbsent(id, name) == null) {
+            byName.putIfAbsent(name.toLowerCase(Locale.ROOT), id);
+        }
+    }
+}
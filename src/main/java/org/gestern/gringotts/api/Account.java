@@ -4,6 +4,7 @@ import org.bukkit.Location;
 import org.gestern.gringotts.AccountChest;
 
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Defines actions possible on an account in an economy.
@@ -41,6 +42,14 @@ public interface Account {
      */
     double balance();
 
+    /**
+     * Return the balance of this account without blocking the calling thread.
+     * The returned future is completed on the server thread owning the account's inventories.
+     *
+     * @return future completed with the balance of this account.
+     */
+    CompletableFuture<Double> balanceAsync();
+
     /**
      * Return the vault balance of this account.
      *
@@ -83,6 +92,22 @@ public interface Account {
      */
     double endBalance();
 
+    /**
+     * Return the balance of this account split by where it is kept, counted in a single pass.
+     * Prefer this over calling several of the balance methods, which each count the account again.
+     *
+     * @return the balance breakdown of this account.
+     */
+    BalanceBreakdown balanceBreakdown();
+
+    /**
+     * Return the balance of this account split by where it is kept, without blocking the calling thread.
+     * The returned future is completed on the server thread owning the account's inventories.
+     *
+     * @return future completed with the balance breakdown of this account.
+     */
+    CompletableFuture<BalanceBreakdown> balanceBreakdownAsync();
+
     /**
      * Return whether this account has at least the specified amount.
      *
@@ -125,11 +150,34 @@ public interface Account {
      */
     TransactionResult remove(double value);
 
+    /**
+     * Add an amount to this account's balance without blocking the calling thread.
+     * The returned future is completed on the server thread owning the account's inventories.
+     *
+     * @param value the amount to be added.
+     * @return future completed with the result of adding (success or failure type)
+     */
+    CompletableFuture<TransactionResult> addAsync(double value);
+
+    /**
+     * Remove an amount from this account's balance without blocking the calling thread.
+     * The returned future is completed on the server thread owning the account's inventories.
+     *
+     * @param value the amount to be removed
+     * @return future completed with the result of removing (success or failure type)
+     */
+    CompletableFuture<TransactionResult> removeAsync(double value);
+
     /**
      * Send an amount to another account.
      * If the transfer fails, both sender and recipient will have unchanged account balance.
      * To complete the transaction, use the {@link Transaction#to(Account)} method on the result of this call.
      * <p>
+     * On Folia, the sender is debited first and the recipient credited afterwards, each on the threads owning their
+     * containers. The legs are written to storage together, but in between other transactions see the amount as
+     * neither on the sender nor on the recipient. If the recipient can't take the amount, the sender is refunded,
+     * which can fail in turn if the sender's containers filled up in the meantime.
+     * <p>
      * Before sending, it is possible to apply taxes with the withTaxes() method.
      *
      * @param value the amount to be transferred
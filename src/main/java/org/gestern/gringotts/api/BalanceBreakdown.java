@@ -0,0 +1,63 @@
+package org.gestern.gringotts.api;
+
+import org.bukkit.Location;
+
+import java.util.List;
+
+/**
+ * Balance of an account, split by where it is kept. All parts are counted together, at one point in time.
+ *
+ * @param virtual    balance held virtually, outside of any container
+ * @param vaults     every vault of the account, in the order of their index
+ * @param inventory  balance in the owner's inventory
+ * @param enderChest balance in the owner's ender chest
+ */
+public record BalanceBreakdown(double virtual, List<Vault> vaults, double inventory, double enderChest) {
+
+    /**
+     * A breakdown of an account without any balance.
+     */
+    public static final BalanceBreakdown EMPTY = new BalanceBreakdown(0, List.of(), 0, 0);
+
+    /**
+     * Balance of a single vault.
+     *
+     * @param location location of the vault's container, or null if it can't be determined
+     * @param balance  balance in the vault
+     */
+    public record Vault(Location location, double balance) {
+    }
+
+    /**
+     * Return the vault balance, summed over all vaults.
+     *
+     * @return the vault balance
+     */
+    public double vaultBalance() {
+        double balance = 0;
+
+        for (Vault vault : vaults) {
+            balance += vault.balance();
+        }
+
+        return balance;
+    }
+
+    /**
+     * Return the inventory balance, which like {@link Account#invBalance()} includes the virtual balance.
+     *
+     * @return the inventory balance
+     */
+    public double invBalance() {
+        return inventory + virtual;
+    }
+
+    /**
+     * Return the total balance.
+     *
+     * @return the total balance
+     */
+    public double total() {
+        return virtual + vaultBalance() + inventory + enderChest;
+    }
+}
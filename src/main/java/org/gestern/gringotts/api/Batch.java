@@ -0,0 +1,54 @@
+package org.gestern.gringotts.api;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Many deposits and withdrawals on any number of accounts, executed together, e.g. to pay out wages to every online
+ * player at once.
+ * <p>
+ * Legs are grouped by account and run in the order they were added. Every leg succeeds or fails on its own, but all
+ * of them are made in a single pass and written to storage together.
+ */
+@SuppressWarnings("unused")
+public interface Batch {
+
+    /**
+     * Add an amount to an account. A negative amount removes from the account instead.
+     *
+     * @param account account to add to
+     * @param value   amount to add
+     * @return this batch
+     */
+    Batch add(Account account, double value);
+
+    /**
+     * Remove an amount from an account. A negative amount adds to the account instead.
+     *
+     * @param account account to remove from
+     * @param value   amount to remove
+     * @return this batch
+     */
+    Batch remove(Account account, double value);
+
+    /**
+     * Return the number of legs in this batch.
+     *
+     * @return the number of legs
+     */
+    int size();
+
+    /**
+     * Execute all legs.
+     *
+     * @return the result of every leg, in the order they were added
+     */
+    List<TransactionResult> execute();
+
+    /**
+     * Execute all legs, without blocking the calling thread.
+     *
+     * @return future completed with the result of every leg, in the order they were added
+     */
+    CompletableFuture<List<TransactionResult>> executeAsync();
+}
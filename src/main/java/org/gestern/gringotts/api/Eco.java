@@ -73,6 +73,13 @@ public interface Eco {
      */
     Set<String> getBanks();
 
+    /**
+     * Start a batch of deposits and withdrawals that are executed together.
+     *
+     * @return an empty batch
+     */
+    Batch batch();
+
     /**
      * Gets account.
      *
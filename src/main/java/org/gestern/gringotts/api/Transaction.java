@@ -1,15 +1,27 @@
 package org.gestern.gringotts.api;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface Transaction {
 
     /**
      * Complete the transaction by sending the transaction amount to a given account.
+     * On Folia the sender and the recipient are not changed at the same instant, see {@link Account#send(double)}.
      *
      * @param to Account to which receives the value of this transaction.
      * @return result of the transaction.
      */
     TransactionResult to(Account to);
 
+    /**
+     * Complete the transaction by sending the transaction amount to a given account, without blocking the calling
+     * thread.
+     *
+     * @param to Account to which receives the value of this transaction.
+     * @return future completed with the result of the transaction.
+     */
+    CompletableFuture<TransactionResult> toAsync(Account to);
+
     /**
      * Apply taxes to this transaction, as configured by the economy plugin.
      * Completing the transaction will fail if the taxes cannot be collected.
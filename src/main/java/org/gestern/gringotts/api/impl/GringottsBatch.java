@@ -0,0 +1,73 @@
+package org.gestern.gringotts.api.impl;
+
+import org.gestern.gringotts.BulkTransaction;
+import org.gestern.gringotts.Configuration;
+import org.gestern.gringotts.GringottsAccount;
+import org.gestern.gringotts.GringottsException;
+import org.gestern.gringotts.api.Account;
+import org.gestern.gringotts.api.Batch;
+import org.gestern.gringotts.api.TransactionResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Batch of deposits and withdrawals, run by a {@link BulkTransaction}.
+ */
+public class GringottsBatch implements Batch {
+    private final BulkTransaction bulk = new BulkTransaction();
+
+    /**
+     * Index of every leg's result in the bulk transaction, or -1 for legs on invalid accounts.
+     */
+    private final List<Integer> indexes = new ArrayList<>();
+
+    @Override
+    public Batch add(Account account, double value) {
+        GringottsAccount backing = GringottsEco.backing(account);
+
+        indexes.add(backing != null ? bulk.add(backing, Configuration.CONF.getCurrency().getCentValue(value)) : -1);
+
+        return this;
+    }
+
+    @Override
+    public Batch remove(Account account, double value) {
+        return add(account, -value);
+    }
+
+    @Override
+    public int size() {
+        return indexes.size();
+    }
+
+    @Override
+    public List<TransactionResult> execute() {
+        try {
+            // allow a second per thousand legs on top of the usual timeout
+            return executeAsync().get(1 + indexes.size() / 1000, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            throw new GringottsException(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<TransactionResult>> executeAsync() {
+        return bulk.run().thenApply(results -> {
+            TransactionResult[] ordered = new TransactionResult[indexes.size()];
+
+            for (int i = 0; i < ordered.length; i++) {
+                int index = indexes.get(i);
+
+                ordered[i] = index >= 0 ? results[index] : TransactionResult.ERROR;
+            }
+
+            return Arrays.asList(ordered);
+        });
+    }
+}
@@ -16,6 +16,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The type Gringotts eco.
@@ -123,6 +124,11 @@ public class GringottsEco implements Eco {
         return Collections.emptySet();
     }
 
+    @Override
+    public Batch batch() {
+        return new GringottsBatch();
+    }
+
     /**
      * Gets account.
      *
@@ -146,6 +152,16 @@ public class GringottsEco implements Eco {
         return custom(parts[0], parts[1]);
     }
 
+    /**
+     * The account backing an API account, if it is a valid one.
+     *
+     * @param account the API account
+     * @return the backing account, or null if the account is not valid
+     */
+    static GringottsAccount backing(Account account) {
+        return account instanceof ValidAccount valid ? valid.acc : null;
+    }
+
     private static class InvalidAccount implements BankAccount, PlayerAccount {
 
         private final String type;
@@ -203,6 +219,11 @@ public class GringottsEco implements Eco {
             return 0; // invalid account has 0 balance
         }
 
+        @Override
+        public CompletableFuture<Double> balanceAsync() {
+            return CompletableFuture.completedFuture(balance());
+        }
+
         /**
          * Vault balance double.
          *
@@ -258,6 +279,16 @@ public class GringottsEco implements Eco {
             return 0;
         }
 
+        @Override
+        public BalanceBreakdown balanceBreakdown() {
+            return BalanceBreakdown.EMPTY;
+        }
+
+        @Override
+        public CompletableFuture<BalanceBreakdown> balanceBreakdownAsync() {
+            return CompletableFuture.completedFuture(balanceBreakdown());
+        }
+
         /**
          * Has boolean.
          *
@@ -302,6 +333,16 @@ public class GringottsEco implements Eco {
             return TransactionResult.ERROR;
         }
 
+        @Override
+        public CompletableFuture<TransactionResult> addAsync(double value) {
+            return CompletableFuture.completedFuture(add(value));
+        }
+
+        @Override
+        public CompletableFuture<TransactionResult> removeAsync(double value) {
+            return CompletableFuture.completedFuture(remove(value));
+        }
+
         /**
          * Send transaction.
          *
@@ -552,6 +593,11 @@ public class GringottsEco implements Eco {
             return Configuration.CONF.getCurrency().getDisplayValue(acc.getBalance());
         }
 
+        @Override
+        public CompletableFuture<Double> balanceAsync() {
+            return acc.getBalanceAsync().thenApply(Configuration.CONF.getCurrency()::getDisplayValue);
+        }
+
         /**
          * Vault balance double.
          *
@@ -607,6 +653,16 @@ public class GringottsEco implements Eco {
             return Configuration.CONF.getCurrency().getDisplayValue(acc.getEndBalance());
         }
 
+        @Override
+        public BalanceBreakdown balanceBreakdown() {
+            return acc.getBalanceBreakdown();
+        }
+
+        @Override
+        public CompletableFuture<BalanceBreakdown> balanceBreakdownAsync() {
+            return acc.getBalanceBreakdownAsync();
+        }
+
         /**
          * Has boolean.
          *
@@ -659,6 +715,24 @@ public class GringottsEco implements Eco {
             return acc.remove(Configuration.CONF.getCurrency().getCentValue(value));
         }
 
+        @Override
+        public CompletableFuture<TransactionResult> addAsync(double value) {
+            if (value < 0) {
+                return removeAsync(-value);
+            }
+
+            return acc.addAsync(Configuration.CONF.getCurrency().getCentValue(value));
+        }
+
+        @Override
+        public CompletableFuture<TransactionResult> removeAsync(double value) {
+            if (value < 0) {
+                return addAsync(-value);
+            }
+
+            return acc.removeAsync(Configuration.CONF.getCurrency().getCentValue(value));
+        }
+
         /**
          * Send transaction.
          *
@@ -1,8 +1,13 @@
 package org.gestern.gringotts.api.impl;
 
+import org.gestern.gringotts.Configuration;
+import org.gestern.gringotts.GringottsAccount;
 import org.gestern.gringotts.api.Account;
 import org.gestern.gringotts.api.TaxedTransaction;
 import org.gestern.gringotts.api.TransactionResult;
+import org.gestern.gringotts.currency.GringottsCurrency;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The type Gringotts taxed transaction.
@@ -37,6 +42,12 @@ public class GringottsTaxedTransaction extends GringottsTransaction implements T
      */
     @Override
     public TransactionResult to(Account recipient) {
+        Transfer transfer = transfer(recipient);
+
+        if (transfer != null) {
+            return transfer.source.transfer(transfer.value, transfer.taxes, transfer.recipient, transfer.collector);
+        }
+
         TransactionResult taxResult = from.remove(taxes);
 
         if (taxResult != TransactionResult.SUCCESS) {
@@ -57,6 +68,64 @@ public class GringottsTaxedTransaction extends GringottsTransaction implements T
         return result;
     }
 
+    /**
+     * Complete the transaction by sending the transaction amount to a given account, without blocking the calling
+     * thread.
+     *
+     * @param recipient Account to which receives the value of this transaction.
+     * @return future completed with the result of the transaction.
+     */
+    @Override
+    public CompletableFuture<TransactionResult> toAsync(Account recipient) {
+        Transfer transfer = transfer(recipient);
+
+        if (transfer != null) {
+            return transfer.source.transferAsync(transfer.value, transfer.taxes, transfer.recipient, transfer.collector);
+        }
+
+        return from.removeAsync(taxes).thenCompose(taxResult -> {
+            if (taxResult != TransactionResult.SUCCESS) {
+                return CompletableFuture.completedFuture(taxResult);
+            }
+
+            return super.toAsync(recipient).thenCompose(result -> {
+                // undo taxing if transaction failed
+                if (result != TransactionResult.SUCCESS) {
+                    return from.addAsync(taxes).thenApply(refunded -> result);
+                }
+
+                if (collector != null) {
+                    return collector.addAsync(taxes).thenApply(collected -> result);
+                }
+
+                return CompletableFuture.completedFuture(result);
+            });
+        });
+    }
+
+    /**
+     * Plan this transaction as a single transfer between the backing accounts.
+     *
+     * @param recipient Account to which receives the value of this transaction.
+     * @return the transfer, or null if any of the accounts is not valid or the amounts can't be transferred at once
+     */
+    private Transfer transfer(Account recipient) {
+        GringottsAccount source       = GringottsEco.backing(from);
+        GringottsAccount destination  = GringottsEco.backing(recipient);
+        GringottsAccount taxCollector = collector != null ? GringottsEco.backing(collector) : null;
+
+        if (source == null || destination == null || (collector != null && taxCollector == null) || value < 0 || taxes < 0) {
+            return null;
+        }
+
+        GringottsCurrency currency = Configuration.CONF.getCurrency();
+
+        return new Transfer(source, currency.getCentValue(value), currency.getCentValue(taxes), destination, taxCollector);
+    }
+
+    private record Transfer(GringottsAccount source, long value, long taxes, GringottsAccount recipient, GringottsAccount collector) {
+    }
+
     /**
      * Add a tax collector to this taxed transaction. The tax collector account receives the taxes from this
      * transaction.
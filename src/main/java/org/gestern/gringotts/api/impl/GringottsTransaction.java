@@ -1,11 +1,14 @@
 package org.gestern.gringotts.api.impl;
 
 import org.gestern.gringotts.Configuration;
+import org.gestern.gringotts.GringottsAccount;
 import org.gestern.gringotts.api.Account;
 import org.gestern.gringotts.api.TaxedTransaction;
 import org.gestern.gringotts.api.Transaction;
 import org.gestern.gringotts.api.TransactionResult;
 
+import java.util.concurrent.CompletableFuture;
+
 public class GringottsTransaction implements Transaction {
 
     /**
@@ -45,6 +48,13 @@ public class GringottsTransaction implements Transaction {
             return TransactionResult.ERROR;
         }
 
+        GringottsAccount source    = GringottsEco.backing(from);
+        GringottsAccount recipient = GringottsEco.backing(to);
+
+        if (source != null && recipient != null) {
+            return source.transfer(Configuration.CONF.getCurrency().getCentValue(value), 0, recipient, null);
+        }
+
         TransactionResult removed = from.remove(value);
 
         if (removed == TransactionResult.SUCCESS) {
@@ -63,6 +73,36 @@ public class GringottsTransaction implements Transaction {
         return removed;
     }
 
+    @Override
+    public CompletableFuture<TransactionResult> toAsync(Account to) {
+        if (value < 0) {
+            return CompletableFuture.completedFuture(TransactionResult.ERROR);
+        }
+
+        GringottsAccount source    = GringottsEco.backing(from);
+        GringottsAccount recipient = GringottsEco.backing(to);
+
+        if (source != null && recipient != null) {
+            return source.transferAsync(Configuration.CONF.getCurrency().getCentValue(value), 0, recipient, null);
+        }
+
+        return from.removeAsync(value).thenCompose(removed -> {
+            // return reason remove failed
+            if (removed != TransactionResult.SUCCESS) {
+                return CompletableFuture.completedFuture(removed);
+            }
+
+            return to.addAsync(value).thenCompose(added -> {
+                if (added == TransactionResult.SUCCESS) {
+                    return CompletableFuture.completedFuture(added);
+                }
+
+                // adding failed, refund source and return reason add failed
+                return from.addAsync(value).thenApply(refunded -> added);
+            });
+        });
+    }
+
     @Override
     public TaxedTransaction withTaxes() {
         double tax = Configuration.CONF.transactionTaxFlat + value * Configuration.CONF.transactionTaxRate;
@@ -69,7 +69,7 @@ public class VaultConnector implements Economy {
     }
 
     @Override
-    public double getBalance(String accountId) { // TODO optimize
+    public double getBalance(String accountId) {
         return eco.getAccount(accountId).balance();
     }
 
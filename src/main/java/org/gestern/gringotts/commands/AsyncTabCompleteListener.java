@@ -0,0 +1,55 @@
+package org.gestern.gringotts.commands;
+
+import java.util.List;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.gestern.gringotts.Gringotts;
+
+import com.destroystokyo.paper.event.server.AsyncTabCompleteEvent;
+
+/**
+ * Serves tab completion of Gringotts commands off the server thread.
+ * <p>
+ * The command executors only complete from in-memory indexes, so they are safe to call from the async completion
+ * thread. Completions handled here never reach the synchronous {@code onTabComplete} path.
+ */
+public class AsyncTabCompleteListener implements Listener {
+
+    @EventHandler(ignoreCancelled = true)
+    public void onAsyncTabComplete(AsyncTabCompleteEvent event) {
+        if (event.isHandled() || !event.isCommand()) {
+            return;
+        }
+
+        String buffer = event.getBuffer();
+        int    start  = buffer.startsWith("/") ? 1 : 0;
+        int    space  = buffer.indexOf(' ', start);
+
+        // still completing the command name itself
+        if (space < 0) {
+            return;
+        }
+
+        String  label   = buffer.substring(start, space);
+        Command command = Bukkit.getCommandMap().getCommand(label);
+
+        if (!(command instanceof PluginCommand pluginCommand)
+                || pluginCommand.getPlugin() != Gringotts.instance
+                || !(pluginCommand.getExecutor() instanceof GringottsAbstractExecutor executor)
+                || !command.testPermissionSilent(event.getSender())) {
+            return;
+        }
+
+        String[]     args        = buffer.substring(space + 1).split(" ", -1);
+        List<String> completions = executor.onTabComplete(event.getSender(), command, label, args);
+
+        if (completions != null) {
+            event.setCompletions(completions);
+            event.setHandled(true);
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package org.gestern.gringotts.commands;
 
-import com.google.common.collect.Lists;
 import net.md_5.bungee.api.chat.ComponentBuilder;
-import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandException;
@@ -10,12 +8,10 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabExecutor;
 import org.bukkit.entity.Player;
 import org.gestern.gringotts.*;
-import org.gestern.gringotts.accountholder.AccountHolderProvider;
+import org.gestern.gringotts.accountholder.AccountNameCompleter;
 import org.gestern.gringotts.api.*;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public abstract class GringottsAbstractExecutor implements TabExecutor {
     static final String TAG_BALANCE = "%balance";
@@ -24,6 +20,13 @@ public abstract class GringottsAbstractExecutor implements TabExecutor {
 
     static final String TAG_VALUE = "%value";
 
+    /**
+     * Maximum number of account names suggested when tab completing.
+     */
+    static final int MAX_SUGGESTIONS = 100;
+
+    private static final AccountNameCompleter ACCOUNT_NAMES = new AccountNameCompleter();
+
     final Eco eco = Gringotts.instance.getEco();
 
     static void sendInvalidAccountMessage(CommandSender sender, String accountName) {
@@ -171,48 +174,31 @@ public abstract class GringottsAbstractExecutor implements TabExecutor {
     }
 
     void sendBalanceMessage(Account account) {
-        account.message(Language.LANG.balance.replace(TAG_BALANCE, eco.currency().format(account.balance())));
+        BalanceBreakdown breakdown = account.balanceBreakdown();
+
+        account.message(Language.LANG.balance.replace(TAG_BALANCE, eco.currency().format(breakdown.total())));
 
         if (Configuration.CONF.balanceShowVault) {
-            account.message(Language.LANG.vault_balance.replace(TAG_BALANCE, eco.currency().format(account.vaultBalance())));
+            account.message(Language.LANG.vault_balance.replace(TAG_BALANCE, eco.currency().format(breakdown.vaultBalance())));
         }
 
         if (Configuration.CONF.balanceShowInventory) {
-            account.message(Language.LANG.inv_balance.replace(TAG_BALANCE, eco.currency().format(account.invBalance())));
+            account.message(Language.LANG.inv_balance.replace(TAG_BALANCE, eco.currency().format(breakdown.invBalance())));
         }
 
         if (Configuration.CONF.balanceShowEnderchest && account.hasPermission(Permissions.USE_VAULT_ENDERCHEST.node)) {
-            account.message(Language.LANG.end_balance.replace(TAG_BALANCE, eco.currency().format(account.endBalance())));
+            account.message(Language.LANG.end_balance.replace(TAG_BALANCE, eco.currency().format(breakdown.enderChest())));
         }
     }
 
+    /**
+     * Suggest account names for a partial account argument.
+     *
+     * @param arg the partial argument
+     * @return at most {@link #MAX_SUGGESTIONS} matching account names
+     */
     public List<String> suggestAccounts(String arg) {
-        String[] steps = (arg + " ").split(":");
-
-        if (steps.length == 1) {
-            return Stream.of(Bukkit.getOfflinePlayers())
-                    .map(OfflinePlayer::getName)
-                    .filter(Objects::nonNull)
-                    .filter(name -> startsWithIgnoreCase(name, arg))
-                    .collect(Collectors.toList());
-        }
-
-        try {
-            String type = steps[0].toUpperCase();
-
-            Optional<AccountHolderProvider> providerOptional = Gringotts.instance.getAccountHolderFactory().getProvider(type);
-
-            if (providerOptional.isPresent()) {
-                return providerOptional.get().getAccountNames().stream()
-                        .filter(Objects::nonNull)
-                        .map(s -> type + ":" + s)
-                        .filter(name -> startsWithIgnoreCase(name, arg))
-                        .collect(Collectors.toList());
-            }
-        } catch (Exception ignored) {
-        }
-
-        return Lists.newArrayList();
+        return ACCOUNT_NAMES.complete(arg, MAX_SUGGESTIONS);
     }
 
     public boolean startsWithIgnoreCase(String source, String target) {
@@ -16,9 +16,12 @@ import org.bukkit.inventory.meta.BookMeta;
 import org.gestern.gringotts.Configuration;
 import org.gestern.gringotts.Gringotts;
 import org.gestern.gringotts.Language;
+import org.gestern.gringotts.TransactionQueue;
+import org.gestern.gringotts.VaultReconciler;
 import org.gestern.gringotts.api.dependency.Dependency;
 import org.gestern.gringotts.currency.Denomination;
 import org.gestern.gringotts.currency.GringottsCurrency;
+import org.gestern.gringotts.data.StorageExecutor;
 
 import java.io.File;
 import java.io.IOException;
@@ -29,7 +32,7 @@ import java.util.stream.Collectors;
  * Administrative commands not related to ingame money.
  */
 public class GringottsExecutor extends GringottsAbstractExecutor {
-    private static final List<String> commands = Arrays.asList("reload", "dependencies", "denominations", "adddenomination");
+    private static final List<String> commands = Arrays.asList("reload", "dependencies", "denominations", "adddenomination", "status");
     private final Gringotts gringotts;
 
     private static final String TAG_VALUE = "%value";
@@ -74,6 +77,35 @@ public class GringottsExecutor extends GringottsAbstractExecutor {
 
                 return true;
             }
+            case "status": {
+                TransactionQueue queue = Gringotts.instance.getTransactionQueue();
+
+                sender.sendMessage("Gringotts: " + queue.getDepth() + " queued transactions, last tick ran "
+                        + queue.getLastDrained() + " in "
+                        + String.format("%.2f", queue.getLastDrainNanos() / 1_000_000d) + " ms (budget "
+                        + Configuration.CONF.transactionTickBudget + " ms)");
+
+                VaultReconciler reconciler = Gringotts.instance.getVaultReconciler();
+
+                long unchecked = Gringotts.instance.getDao().retrieveChests().stream()
+                        .filter(chest -> !chest.isVerified())
+                        .count();
+
+                sender.sendMessage("Vault reconciliation: " + reconciler.getChecked() + " vaults checked, "
+                        + reconciler.getCorrected() + " corrected, " + reconciler.getQueued() + " queued, "
+                        + (unchecked - reconciler.getQueued()) + " waiting for their chunk to load; last tick checked "
+                        + reconciler.getLastChecked() + " at "
+                        + String.format("%.3f", reconciler.getAverageCheckNanos() / 1_000_000d) + " ms each (budget "
+                        + Configuration.CONF.reconcileTickBudget + " ms)");
+
+                StorageExecutor storage = Gringotts.instance.getStorageExecutor();
+
+                sender.sendMessage("Storage reads: " + describe(storage.getReadMetrics()));
+                sender.sendMessage("Storage writes: " + describe(storage.getWriteMetrics()) + ", "
+                        + storage.getCommits() + " commits");
+
+                return true;
+            }
             case "deps":
             case "dependencies": {
                 if (sender instanceof Player) {
@@ -313,4 +345,10 @@ public class GringottsExecutor extends GringottsAbstractExecutor {
 
         return Lists.newArrayList();
     }
+
+    private static String describe(StorageExecutor.Metrics metrics) {
+        return metrics.queued() + " queued, " + metrics.active() + " running, " + metrics.completed()
+                + " done, latency " + String.format("%.2f", metrics.averageLatencyNanos() / 1_000_000d)
+                + " ms average, " + String.format("%.2f", metrics.maxLatencyNanos() / 1_000_000d) + " ms max";
+    }
 }
@@ -2,9 +2,7 @@ package org.gestern.gringotts.currency;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.bukkit.Material;
@@ -12,6 +10,7 @@ import org.bukkit.Tag;
 import org.bukkit.block.ShulkerBox;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.BlockStateMeta;
+import org.bukkit.inventory.meta.ItemMeta;
 import org.gestern.gringotts.Configuration;
 
 /**
@@ -23,6 +22,7 @@ import org.gestern.gringotts.Configuration;
  * @author jast
  */
 public class GringottsCurrency {
+    private static final int MATERIAL_COUNT = Material.values().length;
 
     /**
      * Name of the currency.
@@ -47,8 +47,14 @@ public class GringottsCurrency {
      * Show balances and other currency values with individual denomination names.
      */
     private final boolean namedDenominations;
-    private final Map<DenominationKey, Denomination> denoms = new HashMap<>();
     private final List<Denomination> sortedDenoms = new ArrayList<>();
+    private final List<Denomination> denominationsView = Collections.unmodifiableList(sortedDenoms);
+    /**
+     * Denominations indexed by the ordinal of their item's material, each in order of descending value.
+     * Stacks of a material that is not a denomination are rejected with a single array lookup.
+     */
+    @SuppressWarnings("unchecked")
+    private final MaterialDenominations<Denomination>[] byMaterial = new MaterialDenominations[MATERIAL_COUNT];
 
     /**
      * Create currency.
@@ -81,10 +87,22 @@ public class GringottsCurrency {
     public void addDenomination(ItemStack type, double value, String unitName, String unitNamePlural) {
         DenominationKey k = new DenominationKey(type);
         Denomination d = new Denomination(k, getCentValue(value), unitName, unitNamePlural);
-        denoms.put(k, d);
+        // a denomination with an identical item replaces the earlier one
+        sortedDenoms.removeIf(other -> other.getKey().equals(k));
         // infrequent insertion, so I don't mind sorting on every insert
         sortedDenoms.add(d);
         Collections.sort(sortedDenoms);
+
+        List<Denomination> ofMaterial = new ArrayList<>();
+
+        for (Denomination other : sortedDenoms) {
+            if (other.getKey().typeMaterial == k.typeMaterial) {
+                ofMaterial.add(other);
+            }
+        }
+
+        byMaterial[k.typeMaterial.ordinal()] =
+                new MaterialDenominations<>(ofMaterial, other -> other.getKey().typeCustomModelData);
     }
 
 
@@ -148,7 +166,7 @@ public class GringottsCurrency {
      * @return Unmodifiable List of denominations used in this currency, in order of descending value
      */
     public List<Denomination> getDenominations() {
-        return Collections.unmodifiableList(sortedDenoms);
+        return denominationsView;
     }
 
     /**
@@ -199,17 +217,45 @@ public class GringottsCurrency {
      * @param stack the stack to get the denomination for
      * @return denomination for the item stack, or null if there is no such denomination
      */
-    private Denomination getDenominationOf(ItemStack stack) {
-        DenominationKey d = new DenominationKey(stack);
-        if(Configuration.CONF.custommodeldataOnly) {
-            for(Denomination dthis : getDenominations()){
-                if(dthis.getKey().equals(d,true)) {
-                    return dthis;
-                }
+    public Denomination getDenominationOf(ItemStack stack) {
+        if (stack == null) {
+            return null;
+        }
+
+        MaterialDenominations<Denomination> denominations = byMaterial[stack.getType().ordinal()];
+
+        if (denominations == null) {
+            return null;
+        }
+
+        List<Denomination> candidates = denominations.get(customModelData(stack));
+
+        if (Configuration.CONF.custommodeldataOnly) {
+            return candidates.isEmpty() ? null : candidates.get(0);
+        }
+
+        for (int i = 0; i < candidates.size(); i++) {
+            Denomination candidate = candidates.get(i);
+
+            if (stack.isSimilar(candidate.getKey().type)) {
+                return candidate;
             }
         }
 
-        return denoms.get(d);
+        return null;
+    }
+
+    /**
+     * Custom model data of a stack, 0 if it has none. Only reads the item meta if the stack has any.
+     */
+    private static int customModelData(ItemStack stack) {
+        if (!stack.hasItemMeta()) {
+            return 0;
+        }
+
+        ItemMeta meta = stack.getItemMeta();
+
+        return meta != null && meta.hasCustomModelData() ? meta.getCustomModelData() : 0;
     }
 
     /**
@@ -0,0 +1,80 @@
+package org.gestern.gringotts.currency;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * The denominations of a single material, by custom model data.
+ * <p>
+ * The custom model data is looked up in a small open-addressing table of primitive ints, so lookups cost the same
+ * regardless of how many denominations share the material, and they don't allocate.
+ *
+ * @param <T> type of the indexed entries
+ */
+final class MaterialDenominations<T> {
+    private final int[]     keys;
+    private final List<T>[] values;
+    private final int       mask;
+
+    /**
+     * Index the entries of one material.
+     *
+     * @param entries         entries to index, in order of preference
+     * @param customModelData custom model data of an entry, 0 for none
+     */
+    @SuppressWarnings("unchecked")
+    MaterialDenominations(List<T> entries, ToIntFunction<T> customModelData) {
+        Map<Integer, List<T>> grouped = new LinkedHashMap<>();
+
+        for (T entry : entries) {
+            grouped.computeIfAbsent(customModelData.applyAsInt(entry), c -> new ArrayList<>()).add(entry);
+        }
+
+        int capacity = 2;
+
+        while (capacity < grouped.size() * 2) {
+            capacity <<= 1;
+        }
+
+        this.keys = new int[capacity];
+        this.values = (List<T>[]) new List[capacity];
+        this.mask = capacity - 1;
+
+        for (Map.Entry<Integer, List<T>> entry : grouped.entrySet()) {
+            int slot = mix(entry.getKey()) & mask;
+
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot] = entry.getKey();
+            values[slot] = List.copyOf(entry.getValue());
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Get the entries with the given custom model data.
+     *
+     * @param customModelData the custom model data, 0 for none
+     * @return the entries in order of preference, possibly empty
+     */
+    List<T> get(int customModelData) {
+        for (int slot = mix(customModelData) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == customModelData) {
+                return values[slot];
+            }
+        }
+
+        return Collections.emptyList();
+    }
+}
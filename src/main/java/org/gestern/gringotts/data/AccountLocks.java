@@ -0,0 +1,88 @@
+package org.gestern.gringotts.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * Locks serializing storage changes per account, so that changes to different accounts don't wait for each other.
+ * <p>
+ * Accounts are spread over a fixed number of stripes by type and owner. Like {@link KnownAccounts}, keys are
+ * case-insensitive, so every spelling of an account maps to the same lock. Two accounts may share a stripe, which
+ * only costs some contention.
+ */
+final class AccountLocks {
+    private static final int STRIPES = 64;
+
+    private final Striped<Lock> locks = Striped.lock(STRIPES);
+
+    /**
+     * Run an action while holding the lock of an account.
+     *
+     * @param type   account type
+     * @param owner  account owner id
+     * @param action the action
+     * @param <V>    result type
+     * @return result of the action
+     */
+    <V> V with(String type, String owner, Supplier<V> action) {
+        Lock lock = locks.get(KnownAccounts.key(type, owner));
+
+        lock.lock();
+
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Run an action while holding the lock of an account.
+     *
+     * @param type   account type
+     * @param owner  account owner id
+     * @param action the action
+     */
+    void run(String type, String owner, Runnable action) {
+        with(type, owner, () -> {
+            action.run();
+
+            return null;
+        });
+    }
+
+    /**
+     * Run an action while holding the locks of two accounts, e.g. when an account is renamed. The locks are always
+     * taken in the same order, so concurrent callers can't deadlock.
+     *
+     * @param type   account type
+     * @param owner  account owner id
+     * @param other  other account owner id, of the same type
+     * @param action the action
+     * @param <V>    result type
+     * @return result of the action
+     */
+    <V> V with(String type, String owner, String other, Supplier<V> action) {
+        List<Lock> held = new ArrayList<>(2);
+
+        try {
+            for (Lock lock : locks.bulkGet(List.of(KnownAccounts.key(type, owner), KnownAccounts.key(type, other)))) {
+                // both accounts may share a stripe
+                if (!held.contains(lock)) {
+                    lock.lock();
+                    held.add(lock);
+                }
+            }
+
+            return action.get();
+        } finally {
+            for (Lock lock : held) {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package org.gestern.gringotts.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import io.ebean.Database;
+import io.ebean.SqlUpdate;
+
+/**
+ * Authoritative in-memory table of the virtual cents stored on each account.
+ * <p>
+ * Entries are loaded together with the account index when the plugin starts. An entry that was forgotten since is
+ * loaded again on first access, on a storage reader while the storage executor runs. Reads and writes only touch
+ * memory; changed entries are marked dirty and written back by the DAO's flush, in one batched transaction together
+ * with the pending vault balances. Flushes run periodically and when the plugin is disabled. A crash therefore loses
+ * at most the changes made since the last flush.
+ * <p>
+ * Entries that are no longer needed, like those of players who left, are forgotten once their cents are written, so
+ * that the cache doesn't keep every account touched since startup.
+ * <p>
+ * Like {@link KnownAccounts}, keys are case-insensitive, so that every spelling of an account shares one entry.
+ * Changes are written with the spelling stored in {@code gringotts_account} when the entry was loaded from there.
+ */
+final class CentsCache {
+    /**
+     * Stored cents of an entry that was changed before its cents were known to be written.
+     */
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private final Database db;
+    private final Supplier<StorageExecutor> storage;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    /**
+     * Entries to forget as soon as their cents are written.
+     */
+    private final Set<String> leaving = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param db      the database
+     * @param storage the storage executor loading missing entries, null while there is none
+     */
+    CentsCache(Database db, Supplier<StorageExecutor> storage) {
+        this.db = db;
+        this.storage = storage;
+    }
+
+    /**
+     * Remember the cents stored on an account, e.g. when loading all accounts. An entry that is cached already is kept.
+     *
+     * @param type  account type
+     * @param owner account owner id
+     * @param cents cents stored on the account
+     */
+    void preload(String type, String owner, long cents) {
+        entries.putIfAbsent(KnownAccounts.key(type, owner), new Entry(type, owner, cents, cents));
+    }
+
+    /**
+     * Get the cents stored on an account, loading them from storage if they are not cached yet.
+     *
+     * @param type  account type
+     * @param owner account owner id
+     * @return the cents stored on the account, 0 if the account is not stored
+     */
+    long get(String type, String owner) {
+        String key   = KnownAccounts.key(type, owner);
+        Entry  entry = entries.get(key);
+
+        if (entry != null) {
+            return entry.cents;
+        }
+
+        Optional<EBeanAccount> stored = load(type, owner);
+
+        // don't remember accounts that don't exist (yet), they will be created with their start balance
+        if (stored.isEmpty()) {
+            return 0;
+        }
+
+        EBeanAccount account = stored.get();
+
+        return entries.computeIfAbsent(key,
+                k -> new Entry(account.getType(), account.getOwner(), account.getCents(), account.getCents())).cents;
+    }
+
+    /**
+     * Load an account on a storage reader, bounded like every other read, or on the calling thread once the storage
+     * executor is shut down.
+     */
+    private Optional<EBeanAccount> load(String type, String owner) {
+        Supplier<Optional<EBeanAccount>> find = () -> db.find(EBeanAccount.class)
+                .where()
+                .ieq("type", type)
+                .ieq("owner", owner)
+                .findOneOrEmpty();
+
+        StorageExecutor executor = storage.get();
+
+        if (executor != null) {
+            try {
+                return executor.read(find).join();
+            } catch (CompletionException e) {
+                if (!(e.getCause() instanceof RejectedExecutionException)) {
+                    throw e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+            }
+        }
+
+        return find.get();
+    }
+
+    /**
+     * Set the cents stored on an account. The change is written to storage with the next flush.
+     *
+     * @param type  account type
+     * @param owner account owner id
+     * @param cents new amount of cents
+     */
+    void set(String type, String owner, long cents) {
+        // atomic with forgetting the entry, which must not drop a change made meanwhile
+        entries.compute(KnownAccounts.key(type, owner), (key, entry) -> {
+            Entry updated = entry != null ? entry : new Entry(type, owner, cents, UNKNOWN);
+
+            updated.cents = cents;
+            dirty.add(key);
+
+            return updated;
+        });
+    }
+
+    /**
+     * Keep the entry of an account that was going to be forgotten, e.g. because its player joined again, and load it
+     * if it isn't cached.
+     *
+     * @param type  account type
+     * @param owner account owner id
+     */
+    void keep(String type, String owner) {
+        leaving.remove(KnownAccounts.key(type, owner));
+        get(type, owner);
+    }
+
+    /**
+     * Forget the entry of an account, right away if its cents are written, otherwise once they are. It is loaded again
+     * when it is needed.
+     *
+     * @param type  account type
+     * @param owner account owner id
+     */
+    void forget(String type, String owner) {
+        String key = KnownAccounts.key(type, owner);
+
+        leaving.add(key);
+        forgetIfWritten(key);
+    }
+
+    private void forgetIfWritten(String key) {
+        entries.computeIfPresent(key, (k, entry) -> {
+            // a change that is taken, but not written yet, still differs from the stored cents
+            if (!leaving.contains(k) || dirty.contains(k) || entry.stored != entry.cents) {
+                return entry;
+            }
+
+            leaving.remove(k);
+
+            return null;
+        });
+    }
+
+    /**
+     * Note that changes were written, so that their entries can be forgotten.
+     *
+     * @param changes changes taken by {@link #drain()} and written since
+     */
+    void written(List<Change> changes) {
+        for (Change change : changes) {
+            String key   = KnownAccounts.key(change.type(), change.owner());
+            Entry  entry = entries.get(key);
+
+            if (entry != null) {
+                entry.stored = change.cents();
+                forgetIfWritten(key);
+            }
+        }
+    }
+
+    /**
+     * Forget the cached entry of an account and take its pending change, if any, to be written by
+     * {@link #write(List)}. Must be called before the account is renamed in storage.
+     *
+     * @param type  account type
+     * @param owner account owner id
+     * @return the pending change of the account
+     */
+    Optional<Change> evict(String type, String owner) {
+        String key   = KnownAccounts.key(type, owner);
+        Entry  entry = entries.remove(key);
+
+        leaving.remove(key);
+
+        if (entry != null && dirty.remove(key)) {
+            return Optional.of(new Change(type, owner, entry.cents));
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Forget the cached entry of an account without writing its pending change.
+     *
+     * @param type  account type
+     * @param owner account owner id
+     */
+    void discard(String type, String owner) {
+        String key = KnownAccounts.key(type, owner);
+
+        dirty.remove(key);
+        leaving.remove(key);
+        entries.remove(key);
+    }
+
+    /**
+     * Take all pending changes, to be written by {@link #write(List)}.
+     *
+     * @return the pending changes, with the cents they had when they were taken
+     */
+    synchronized List<Change> drain() {
+        List<Change> pending = new ArrayList<>(dirty.size());
+
+        for (String key : dirty) {
+            // unmark before reading, so that a concurrent change is either taken now or marks the entry again
+            dirty.remove(key);
+
+            Entry entry = entries.get(key);
+
+            if (entry != null) {
+                pending.add(new Change(entry.type, entry.owner, entry.cents));
+            }
+        }
+
+        return pending;
+    }
+
+    /**
+     * Mark changes as pending again after writing them failed.
+     *
+     * @param changes changes taken by {@link #drain()}
+     */
+    void restore(List<Change> changes) {
+        for (Change change : changes) {
+            String key = KnownAccounts.key(change.type(), change.owner());
+
+            // an entry that was discarded in the meantime must stay gone
+            if (entries.containsKey(key)) {
+                dirty.add(key);
+            }
+        }
+    }
+
+    /**
+     * Write changes in the current transaction.
+     *
+     * @param changes changes taken by {@link #drain()}
+     * @return the changes of accounts that are not stored
+     */
+    List<Change> write(List<Change> changes) {
+        if (changes.isEmpty()) {
+            return List.of();
+        }
+
+        SqlUpdate update = db.sqlUpdate("UPDATE gringotts_account SET cents = :cents " +
+                "WHERE owner = :owner and type = :type");
+
+        for (Change change : changes) {
+            update.setParameter("cents", change.cents());
+            update.setParameter("owner", change.owner());
+            update.setParameter("type", change.type());
+            update.addBatch();
+        }
+
+        int[]        updated = update.executeBatch();
+        List<Change> missing = new ArrayList<>(0);
+
+        // drivers may report success without a count, only a count of 0 says there was no row
+        for (int i = 0; i < updated.length && i < changes.size(); i++) {
+            if (updated[i] == 0) {
+                missing.add(changes.get(i));
+            }
+        }
+
+        return missing;
+    }
+
+    /**
+     * Cents of an account at the time its change was taken.
+     */
+    record Change(String type, String owner, long cents) {
+    }
+
+    private static final class Entry {
+        private final String type;
+        private final String owner;
+        private volatile long cents;
+        /**
+         * Cents last written to storage, or {@link #UNKNOWN}.
+         */
+        private volatile long stored;
+
+        private Entry(String type, String owner, long cents, long stored) {
+            this.type = type;
+            this.owner = owner;
+            this.cents = cents;
+            this.stored = stored;
+        }
+    }
+}
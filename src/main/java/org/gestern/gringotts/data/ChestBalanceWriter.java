@@ -0,0 +1,131 @@
+package org.gestern.gringotts.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bukkit.World;
+import org.gestern.gringotts.AccountChest;
+import org.gestern.gringotts.SchedulerUtil;
+
+import io.ebean.Database;
+import io.ebean.SqlUpdate;
+
+/**
+ * Coalesces vault balance updates and writes them to {@code gringotts_accountchest} off the server thread.
+ * <p>
+ * Only the latest balance of each vault is kept. The first update after a write schedules the DAO's flush a tick
+ * later, so any number of updates within a tick results in a single batched transaction, which also carries the
+ * account cents changed in the meantime.
+ */
+final class ChestBalanceWriter {
+    private static final long TICK_MILLIS = 50;
+
+    private final Database db;
+    private final Runnable flush;
+
+    private final Map<AccountChest, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * @param db    the database
+     * @param flush writes everything pending, including these balances
+     */
+    ChestBalanceWriter(Database db, Runnable flush) {
+        this.db = db;
+        this.flush = flush;
+    }
+
+    /**
+     * Queue the balance of a vault to be written.
+     *
+     * @param chest   the vault
+     * @param balance its new balance
+     */
+    void queue(AccountChest chest, long balance) {
+        pending.put(chest, balance);
+
+        if (scheduled.compareAndSet(false, true)) {
+            SchedulerUtil.runAsyncLater(flush, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Drop the queued balance of a vault, e.g. because it was deleted.
+     *
+     * @param chest the vault
+     */
+    void discard(AccountChest chest) {
+        pending.remove(chest);
+    }
+
+    /**
+     * Take all queued balances, to be written by {@link #write(List)}.
+     *
+     * @return the queued balances
+     */
+    List<Change> drain() {
+        scheduled.set(false);
+
+        List<Change> changes = new ArrayList<>(pending.size());
+
+        for (AccountChest chest : pending.keySet()) {
+            Long balance = pending.remove(chest);
+
+            if (balance != null) {
+                changes.add(new Change(chest, balance));
+            }
+        }
+
+        return changes;
+    }
+
+    /**
+     * Queue balances again after writing them failed.
+     *
+     * @param changes balances taken by {@link #drain()}
+     */
+    void restore(List<Change> changes) {
+        // keep newer balances that were queued in the meantime
+        for (Change change : changes) {
+            pending.putIfAbsent(change.chest(), change.balance());
+        }
+    }
+
+    /**
+     * Write balances in the current transaction.
+     *
+     * @param changes balances taken by {@link #drain()}
+     */
+    void write(List<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        SqlUpdate update = StorageStatements.updateChestBalances(db);
+
+        for (Change change : changes) {
+            AccountChest chest = change.chest();
+            World        world = chest.getWorld();
+
+            // stored by world name, which can't be looked up once the world is unloaded
+            if (world == null) {
+                continue;
+            }
+
+            StorageStatements.addChestBalance(update, world.getName(), chest.getX(), chest.getY(), chest.getZ(),
+                    change.balance());
+        }
+
+        update.executeBatch();
+    }
+
+    /**
+     * Balance of a vault at the time it was taken.
+     */
+    record Change(AccountChest chest, long balance) {
+    }
+}
@@ -1,11 +1,15 @@
 package org.gestern.gringotts.data;
 
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.gestern.gringotts.AccountChest;
 import org.gestern.gringotts.GringottsAccount;
 import org.gestern.gringotts.GringottsStorageException;
 import org.gestern.gringotts.accountholder.AccountHolder;
 
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * The interface Dao.
@@ -22,18 +26,20 @@ public interface DAO {
     boolean storeAccountChest(AccountChest chest);
 
     /**
-     * Update a chest's balance oin the database
+     * Update a chest's balance in the database.
+     * The update may be deferred and coalesced with other updates; it is written by the next {@link #flush()} at the latest.
      * @param chest chest to update
      * @param balance chest's new balance
-     * @return true if update was successful, false otherwise
+     * @return true if update was accepted, false otherwise
      */
     boolean updateChestBalance(AccountChest chest, long balance);
 
     /**
-     * Deletes an account chest from the datastore.
+     * Deletes an account chest from the datastore. The chest is unregistered right away, and deleted from storage
+     * without waiting for it.
      *
      * @param chest chest to delete
-     * @return true if the chest was deleted, false if no chest was deleted.
+     * @return true if the chest was registered, false if no chest was deleted.
      */
     boolean deleteAccountChest(AccountChest chest);
 
@@ -81,6 +87,31 @@ public interface DAO {
      */
     Collection<AccountChest> retrieveChests();
 
+    /**
+     * Get the chest that the block at the given location belongs to, either as its sign or as its container.
+     *
+     * @param location location of the block
+     * @return the account chest the block is part of, or null if it is not part of any account chest
+     */
+    AccountChest getAccountChest(Location location);
+
+    /**
+     * Get all chests whose sign is in the given chunk.
+     *
+     * @param world  world of the chunk
+     * @param chunkX chunk x coordinate
+     * @param chunkZ chunk z coordinate
+     * @return chests in the given chunk, possibly empty
+     */
+    Collection<AccountChest> getAccountChests(World world, int chunkX, int chunkZ);
+
+    /**
+     * Forget the resolved containers of the chests next to a block, because a container was placed or broken there.
+     *
+     * @param location location of the block
+     */
+    void forgetContainersNear(Location location);
+
     /**
      * Get all chests belonging to the given account.
      * If a stored chest turns out to be invalid, that chest is removed from storage.
@@ -114,6 +145,16 @@ public interface DAO {
      */
     boolean storeCents(GringottsAccount account, long amount);
 
+    /**
+     * Add an amount of cents to a given account. Unlike storing the sum of retrieved and added cents, this doesn't lose
+     * changes made to the account's cents in between.
+     *
+     * @param account account to add cents to
+     * @param amount  amount of cents to add, negative to take cents away
+     * @return true if adding was successful, false otherwise.
+     */
+    boolean addCents(GringottsAccount account, long amount);
+
     /**
      * Get the cents stored for a given account.
      *
@@ -122,6 +163,24 @@ public interface DAO {
      */
     long retrieveCents(GringottsAccount account);
 
+    /**
+     * Make sure the cents of an account are held in memory, e.g. before its player joins. Loads them from storage if
+     * they aren't, so this should not be called on the server thread.
+     *
+     * @param type  account type
+     * @param owner account owner id
+     */
+    void loadCents(String type, String owner);
+
+    /**
+     * Stop holding the cents of an account in memory once they are written to storage, e.g. when its player quits.
+     * They are loaded again when they are needed.
+     *
+     * @param type  account type
+     * @param owner account owner id
+     */
+    void forgetCents(String type, String owner);
+
     /**
      * Delete an account and associated data from the storage.
      *
@@ -150,23 +209,51 @@ public interface DAO {
     /**
      * Delete account chests boolean.
      *
+     * @param type    the account type
      * @param account the account
      * @return the boolean
      */
-    boolean deleteAccountChests(String account);
+    boolean deleteAccountChests(String type, String account);
 
     /**
-     * Delete account chests
+     * Delete account chests. The chest is unregistered right away, and deleted from storage without waiting for it.
      * @param world
      * @param x
      * @param y
      * @param z
-     * @return boolean indicating success or failure
+     * @return true if a chest was registered at that position
      */
     boolean deleteAccountChest(String world, int x, int y, int z);
 
     /**
-     * Shutdown the database connection.
+     * Make several changes that must be written to storage together, such as the legs of a transfer. A flush
+     * writes either all or none of the changes made by the given function.
+     *
+     * @param changes function making the changes
+     * @param <V>     result type
+     * @return result of the function
+     */
+    <V> V atomically(Supplier<V> changes);
+
+    /**
+     * Make several changes that must be written to storage together, like {@link #atomically}, where the changes are
+     * made one after the other on several threads. A flush writes either all or none of the changes made until the
+     * future returned by the given function completes.
+     *
+     * @param changes function starting the changes
+     * @param <V>     result type
+     * @return future completed with the result of the changes
+     */
+    <V> CompletableFuture<V> atomicallyAsync(Supplier<CompletableFuture<V>> changes);
+
+    /**
+     * Write any changes that are only held in memory, such as account cents, to the storage. Returns once they are
+     * written, waiting for changes made together to be done first.
+     */
+    void flush();
+
+    /**
+     * Shutdown the database connection, writing any pending changes first.
      */
     void shutdown();
 }
@@ -1,23 +1,34 @@
 package org.gestern.gringotts.data;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.Sign;
 import org.gestern.gringotts.AccountChest;
+import org.gestern.gringotts.Configuration;
 import org.gestern.gringotts.Gringotts;
 import org.gestern.gringotts.GringottsAccount;
-import org.gestern.gringotts.Util;
+import org.gestern.gringotts.GringottsStorageException;
+import org.gestern.gringotts.SchedulerUtil;
 import org.gestern.gringotts.accountholder.AccountHolder;
 import org.gestern.gringotts.event.CalculateStartBalanceEvent;
 
@@ -25,6 +36,7 @@ import io.ebean.Database;
 import io.ebean.SqlQuery;
 import io.ebean.SqlRow;
 import io.ebean.SqlUpdate;
+import io.ebean.Transaction;
 
 /**
  * The type E bean dao.
@@ -35,7 +47,49 @@ public class EBeanDAO implements DAO {
     private final Logger log = Gringotts.instance.getLogger();
 
 
-    private List<AccountChest> allChests = new LinkedList<>();
+    private final VaultRegistry chests = new VaultRegistry();
+    private volatile boolean chestsLoaded = false;
+
+    private final CentsCache cents = new CentsCache(db, Gringotts.instance::getStorageExecutor);
+    private final ChestBalanceWriter chestBalances = new ChestBalanceWriter(db, this::flushLater);
+    private final KnownAccounts accounts = new KnownAccounts();
+    private final AccountLocks locks = new AccountLocks();
+
+    /**
+     * Held for reading by changes that must be written together, and for writing while a flush takes the pending
+     * changes, so that a flush never takes only some of them.
+     */
+    private final ReentrantReadWriteLock epoch = new ReentrantReadWriteLock();
+
+    /**
+     * Guards the count of changes made atomically across threads, which can't hold the epoch lock. A flush takes the
+     * pending changes only while none of them is open.
+     */
+    private final Object openLock = new Object();
+    private int open;
+    /**
+     * Completed once the flush waiting for the open changes has taken the pending ones. Changes started in the
+     * meantime wait for it, so that a steady stream of them can't hold back flushes forever.
+     */
+    private CompletableFuture<Void> draining;
+
+    /**
+     * Guards loading all vaults at once, which is not specific to any account.
+     */
+    private final Object chestsLoadLock = new Object();
+
+    private EBeanDAO() {
+        // the cents are loaded with the accounts, so looking them up doesn't wait for storage
+        for (SqlRow row : db.sqlQuery("SELECT type, owner, cents FROM gringotts_account").findList()) {
+            String type  = row.getString("type");
+            String owner = row.getString("owner");
+
+            accounts.add(type, owner);
+            cents.preload(type, owner, row.getLong("cents"));
+        }
+
+        log.info("Loaded " + accounts.size() + " accounts.");
+    }
 
     /**
      * Gets dao.
@@ -62,36 +116,49 @@ public class EBeanDAO implements DAO {
     }
 
     @Override
-    public synchronized boolean storeAccountChest(AccountChest chest) {
-        allChests.add(chest);
+    public boolean storeAccountChest(AccountChest chest) {
+        AccountHolder owner = chest.account.owner;
 
-        SqlUpdate storeChest = db.sqlUpdate(
-            "insert into gringotts_accountchest (world,x,y,z,account,total_value) " +
-            "values (:world, :x, :y, :z, (select id from gringotts_account where owner=:owner and " +
-            "type=:type), :total_value)"
-        );
+        return locks.with(owner.getType(), owner.getId(), () -> insertAccountChest(chest));
+    }
 
-        Sign mark = chest.sign;
-        storeChest.setParameter("world", mark.getWorld().getName());
-        storeChest.setParameter("x", mark.getX());
-        storeChest.setParameter("y", mark.getY());
-        storeChest.setParameter("z", mark.getZ());
-        storeChest.setParameter("owner", chest.account.owner.getId());
-        storeChest.setParameter("type", chest.account.owner.getType());
-        storeChest.setParameter("total_value", chest.getCachedBalance());
+    private boolean insertAccountChest(AccountChest chest) {
+        chests.add(chest);
+
+        SqlUpdate storeChest = StorageStatements.insertChest(
+                db,
+                chest.getWorld().getName(),
+                chest.getX(),
+                chest.getY(),
+                chest.getZ(),
+                chest.account.owner.getType(),
+                chest.account.owner.getId(),
+                chest.getCachedBalance()
+        );
 
-        return storeChest.execute() > 0;
+        // waits for the insert: whether the vault was stored decides whether its creation succeeded
+        return commit(() -> storeChest.execute() > 0);
     }
 
     @Override
-    public synchronized boolean deleteAccountChest(AccountChest chest) {
-        Sign mark = chest.sign;
+    public boolean deleteAccountChest(AccountChest chest) {
+        AccountHolder owner = chest.account.owner;
 
-        return deleteAccountChest(mark.getWorld().getName(), mark.getX(), mark.getY(), mark.getZ());
+        return locks.with(owner.getType(), owner.getId(),
+                () -> removeAccountChest(chest.getWorld().getName(), chest.getX(), chest.getY(), chest.getZ()));
     }
 
     @Override
-    public synchronized boolean storeAccount(GringottsAccount account) {
+    public boolean storeAccount(GringottsAccount account) {
+        // nearly every account exists already, which doesn't need the lock
+        if (hasAccount(account.owner)) {
+            return false;
+        }
+
+        return locks.with(account.owner.getType(), account.owner.getId(), () -> createAccount(account));
+    }
+
+    private boolean createAccount(GringottsAccount account) {
         AccountHolder owner = account.owner;
 
         if (hasAccount(owner)) {
@@ -136,10 +203,16 @@ public class EBeanDAO implements DAO {
             }
         }
 
-        EBeanAccount acc = new EBeanAccount();
+        SqlUpdate storeAccount = StorageStatements.insertAccount(db, owner.getType(), owner.getId());
+
+        // waits for the insert, once per account: the start balance is only kept for an account that is stored
+        boolean stored = commit(() -> storeAccount.execute() > 0);
 
-        acc.setOwner(owner.getId());
-        acc.setType(owner.getType());
+        if (!stored) {
+            return false;
+        }
+
+        accounts.add(owner.getType(), owner.getId());
 
         CalculateStartBalanceEvent startBalanceEvent = new CalculateStartBalanceEvent(account.owner);
 
@@ -147,54 +220,34 @@ public class EBeanDAO implements DAO {
 
         if (startBalanceEvent.startValue > 0) account.add(startBalanceEvent.startValue);
 
-        db.save(acc);
-
         return true;
     }
 
     @Override
-    public synchronized boolean hasAccount(AccountHolder accountHolder) {
-        return db
-            .find(EBeanAccount.class).where()
-            .ieq("type", accountHolder.getType())
-            .ieq("owner", accountHolder.getId())
-            .findOneOrEmpty().isPresent();
+    public boolean hasAccount(AccountHolder accountHolder) {
+        return accounts.contains(accountHolder.getType(), accountHolder.getId());
     }
 
-    /**
-     * Checks the balance of a given account chest and logs any discrepancies between the theoretical balance
-     * and the real balance. If a discrepancy is found, the real balance is updated and logged.
-     *
-     * @param chest              the account chest to check
-     * @param theoreticalBalance the expected balance of the account chest
-     * @param ownerId            the owner ID of the account chest
-     * @param worldName          the name of the world where the chest is located
-     * @param x                  the x-coordinate of the chest's location
-     * @param y                  the y-coordinate of the chest's location
-     * @param z                  the z-coordinate of the chest's location
-     */
-    private void checkAndLogBalance(AccountChest chest, long theoreticalBalance, String ownerId, String worldName, int x, int y, int z) {
-        long realBalance = chest.balance(true);
-        if (theoreticalBalance != realBalance) {
-            Gringotts.instance.getLogger().severe("Balance differs for account "
-                    + ownerId + " at location " + worldName + " " + x + "," + y + "," + z
-                    + ". Was supposed to be at " + theoreticalBalance + ", is at " + realBalance
-            );
+    @Override
+    public Collection<AccountChest> retrieveChests() {
+        if (chestsLoaded) return chests.getAll();
 
-            chest.setCachedBalance(realBalance);
-            updateChestBalance(chest, realBalance);
+        synchronized (chestsLoadLock) {
+            if (chestsLoaded) return chests.getAll();
+
+            return loadAllChests();
         }
     }
 
-    @Override
-    public synchronized Collection<AccountChest> retrieveChests() {
-        if (!allChests.isEmpty()) return allChests;
-
+    private Collection<AccountChest> loadAllChests() {
         List<SqlRow> result = db.sqlQuery(
                 "SELECT ac.world, ac.x, ac.y, ac.z, a.type, a.owner, ac.total_value FROM gringotts_accountchest ac JOIN gringotts_account a ON ac.account = a.id "
         ).findList();
 
-        List<AccountChest> chests = new LinkedList<>();
+        List<AccountChest> loaded = new ArrayList<>(result.size());
+
+        // vaults of the same owner share one account, and the owner is only looked up once
+        Map<String, GringottsAccount> owners = new HashMap<>();
 
         for (SqlRow c : result) {
             String worldName = c.getString("world");
@@ -210,65 +263,90 @@ public class EBeanDAO implements DAO {
                 continue; // skip vaults in non-existing worlds
             }
 
-            Block signBlock = world.getBlockAt(x, y, z);
-            Optional<Sign> optionalSign = Util.getBlockStateAs(
-                    signBlock,
-                    Sign.class
-            );
-
-            if (optionalSign.isPresent()) {
+            GringottsAccount ownerAccount = owners.computeIfAbsent(VaultRegistry.ownerKey(type, ownerId), key -> {
                 AccountHolder owner = Gringotts.instance.getAccountHolderFactory().get(type, ownerId);
 
-                if (owner == null) {
-                    log.info(String.format(
-                            "AccountHolder %s:%s is not valid. Deleting associated account chest at %s",
-                            type,
-                            ownerId,
-                            signBlock.getLocation()
-                    ));
-
-                    deleteAccountChest(
-                            signBlock.getWorld().getName(),
-                            signBlock.getX(),
-                            signBlock.getY(),
-                            signBlock.getZ()
-                    );
-                } else {
-                    long theoreticalBalance = c.getLong("total_value");
-                    GringottsAccount ownerAccount = new GringottsAccount(owner);
-                    AccountChest chest = new AccountChest(optionalSign.get(), ownerAccount, theoreticalBalance);
-                    chests.add(chest);
-
-                    checkAndLogBalance(chest, theoreticalBalance, ownerId, worldName, x, y, z);
-                }
-            } else {
-                // remove accountchest from storage if it is not a valid chest
-                deleteAccountChest(worldName, x, y, z);
+                return owner != null ? new GringottsAccount(owner) : null;
+            });
+
+            if (ownerAccount == null) {
+                log.info(String.format(
+                        "AccountHolder %s:%s is not valid. Deleting associated account chest at %s %d,%d,%d",
+                        type,
+                        ownerId,
+                        worldName,
+                        x,
+                        y,
+                        z
+                ));
+
+                removeAccountChest(worldName, x, y, z);
+
+                continue;
             }
+
+            AccountChest chest = new AccountChest(world.getUID(), x, y, z, ownerAccount, c.getLong("total_value"));
+            loaded.add(chest);
         }
 
-        allChests = chests;
+        chests.addAll(loaded);
+        chestsLoaded = true;
 
-        return chests;
+        Gringotts.instance.getVaultReconciler().submit(loaded);
+
+        return chests.getAll();
+    }
+
+    @Override
+    public AccountChest getAccountChest(Location location) {
+        return chests.getAt(location);
+    }
+
+    @Override
+    public Collection<AccountChest> getAccountChests(World world, int chunkX, int chunkZ) {
+        return chests.getInChunk(world.getUID(), chunkX, chunkZ);
+    }
+
+    @Override
+    public void forgetContainersNear(Location location) {
+        if (location.getWorld() != null) {
+            chests.forgetContainersNear(
+                    location.getWorld().getUID(),
+                    location.getBlockX(),
+                    location.getBlockY(),
+                    location.getBlockZ()
+            );
+        }
     }
 
     @Override
     public boolean deleteAccountChest(String world, int x, int y, int z) {
-        SqlUpdate deleteChest = db.sqlUpdate(
-                "delete from gringotts_accountchest where world = :world and x = :x and y = :y and z = :z"
-        );
+        World        bukkitWorld = Bukkit.getWorld(world);
+        AccountChest registered  = bukkitWorld != null ? chests.getAt(bukkitWorld.getUID(), x, y, z) : null;
+
+        if (registered == null) {
+            return removeAccountChest(world, x, y, z);
+        }
 
-        deleteChest.setParameter("world", world);
-        deleteChest.setParameter("x", x);
-        deleteChest.setParameter("y", y);
-        deleteChest.setParameter("z", z);
+        AccountHolder owner = registered.account.owner;
 
-        allChests.removeIf(chest -> {
-            Location loc = chest.sign.getLocation();
-            return loc.getWorld().getName().equals(world) && loc.getX() == x && loc.getY() == y && loc.getZ() == z;
-        });
+        return locks.with(owner.getType(), owner.getId(), () -> removeAccountChest(world, x, y, z));
+    }
+
+    private boolean removeAccountChest(String world, int x, int y, int z) {
+        SqlUpdate deleteChest = StorageStatements.deleteChest(db, world, x, y, z);
+
+        World        bukkitWorld = Bukkit.getWorld(world);
+        AccountChest removed     = bukkitWorld != null ? chests.remove(bukkitWorld.getUID(), x, y, z) : null;
+
+        if (removed != null) {
+            chestBalances.discard(removed);
+        }
+
+        // called whenever a sign breaks, nobody waits for the stored vault to be gone
+        commitLater(deleteChest::execute);
 
-        return deleteChest.execute() > 0;
+        return removed != null;
     }
 
     /**
@@ -294,22 +372,44 @@ public class EBeanDAO implements DAO {
      */
     @Override
     public boolean renameAccount(String type, String oldName, String newName) {
-        SqlUpdate renameAccount = db.sqlUpdate(
-                "UPDATE gringotts_account SET owner = :newName WHERE owner = :oldName and type = :type"
-        );
+        return locks.with(type, oldName, newName, () -> moveAccount(type, oldName, newName));
+    }
 
-        renameAccount.setParameter("type", type);
-        renameAccount.setParameter("oldName", oldName);
-        renameAccount.setParameter("newName", newName);
+    private boolean moveAccount(String type, String oldName, String newName) {
+        List<CentsCache.Change> evicted = new ArrayList<>(2);
 
-        return renameAccount.execute() > 0;
+        cents.evict(type, oldName).ifPresent(evicted::add);
+        cents.evict(type, newName).ifPresent(evicted::add);
+
+        SqlUpdate renameAccount = StorageStatements.renameAccount(db, type, oldName, newName);
+
+        // waits for the rename: the cached cents of both names are written and forgotten with it
+        boolean renamed = commit(() -> {
+            cents.write(evicted);
+
+            return renameAccount.execute() > 0;
+        });
+
+        if (renamed) {
+            accounts.remove(type, oldName);
+            accounts.add(type, newName);
+
+            return true;
+        }
+
+        return false;
     }
 
     @Override
-    public synchronized List<AccountChest> retrieveChests(GringottsAccount account) {
-        if (!allChests.isEmpty()) {
-            return allChests.stream().filter(ac -> ac.account.owner.getId().equals(account.owner.getId())).collect(Collectors.toList());
+    public List<AccountChest> retrieveChests(GringottsAccount account) {
+        if (chestsLoaded) {
+            return chests.getByOwner(account.owner.getType(), account.owner.getId());
         }
+
+        return locks.with(account.owner.getType(), account.owner.getId(), () -> loadChests(account));
+    }
+
+    private List<AccountChest> loadChests(GringottsAccount account) {
         SqlQuery getChests = db.sqlQuery("SELECT ac.world, ac.x, ac.y, ac.z, ac.total_value " +
                 "FROM gringotts_accountchest ac JOIN gringotts_account a ON ac.account = a.id " +
                 "WHERE a.owner = :owner and a.type = :type");
@@ -319,34 +419,25 @@ public class EBeanDAO implements DAO {
 
         List<AccountChest> chests = new LinkedList<>();
         for (SqlRow result : getChests.findList()) {
-            String worldName = result.getString("world");
-            int x = result.getInteger("x");
-            int y = result.getInteger("y");
-            int z = result.getInteger("z");
-
-            World world = Bukkit.getWorld(worldName);
+            World world = Bukkit.getWorld(result.getString("world"));
 
             if (world == null) {
                 continue; // skip chest if it is in non-existent world
             }
 
-            Optional<Sign> optionalSign = Util.getBlockStateAs(
-                    world.getBlockAt(x, y, z),
-                    Sign.class
+            AccountChest chest = new AccountChest(
+                    world.getUID(),
+                    result.getInteger("x"),
+                    result.getInteger("y"),
+                    result.getInteger("z"),
+                    account,
+                    result.getLong("total_value")
             );
-
-            if (optionalSign.isPresent()) {
-                long theoreticalBalance = result.getLong("total_value");
-                AccountChest chest = new AccountChest(optionalSign.get(), account, theoreticalBalance);
-                chests.add(chest);
-
-                checkAndLogBalance(chest, theoreticalBalance, account.owner.getId(), worldName, x, y, z);
-            } else {
-                // remove accountchest from storage if it is not a valid chest
-                deleteAccountChest(worldName, x, y, z);
-            }
+            chests.add(chest);
         }
 
+        Gringotts.instance.getVaultReconciler().submit(chests);
+
         return chests;
     }
 
@@ -399,79 +490,419 @@ public class EBeanDAO implements DAO {
     }
 
     @Override
-    public synchronized boolean storeCents(GringottsAccount account, long amount) {
-        SqlUpdate up = db.sqlUpdate("UPDATE gringotts_account SET cents = :cents " +
-                "WHERE owner = :owner and type = :type");
+    public boolean storeCents(GringottsAccount account, long amount) {
+        if (!hasAccount(account.owner)) {
+            log.warning("Not storing " + amount + " cents on account " + account.owner.getType() + ":"
+                    + account.owner.getId() + ", which doesn't exist.");
 
-        up.setParameter("cents", amount);
-        up.setParameter("owner", account.owner.getId());
-        up.setParameter("type", account.owner.getType());
+            return false;
+        }
+
+        locks.run(account.owner.getType(), account.owner.getId(),
+                () -> cents.set(account.owner.getType(), account.owner.getId(), amount));
+
+        centsChanged();
+
+        return true;
+    }
+
+    @Override
+    public boolean addCents(GringottsAccount account, long amount) {
+        String type  = account.owner.getType();
+        String owner = account.owner.getId();
+
+        if (!hasAccount(account.owner)) {
+            log.warning("Not adding " + amount + " cents to account " + type + ":" + owner + ", which doesn't exist.");
+
+            return false;
+        }
+
+        // read and written under the lock, so that concurrent changes of the account's cents add up
+        locks.run(type, owner, () -> cents.set(type, owner, cents.get(type, owner) + amount));
+
+        centsChanged();
+
+        return true;
+    }
 
-        return up.execute() == 1;
+    private void centsChanged() {
+        // within atomically(), the flush happens once all changes are made
+        if (Configuration.CONF.storageFlushInterval <= 0 && epoch.getReadHoldCount() == 0) {
+            flushLater();
+        }
     }
 
     @Override
-    public synchronized long retrieveCents(GringottsAccount account) {
-        Optional<EBeanAccount> result = db.find(EBeanAccount.class)
-            .where()
-            .ieq("type", account.owner.getType())
-            .ieq("owner", account.owner.getId())
-            .findOneOrEmpty();
+    public long retrieveCents(GringottsAccount account) {
+        // an account that isn't stored has no cents, don't look for them in storage
+        if (!hasAccount(account.owner)) {
+            return 0;
+        }
 
-        return result.map(eBeanAccount -> eBeanAccount.cents).orElse(0L);
+        return cents.get(account.owner.getType(), account.owner.getId());
+    }
+
+    @Override
+    public void loadCents(String type, String owner) {
+        if (accounts.contains(type, owner)) {
+            cents.keep(type, owner);
+        }
     }
 
     @Override
-    public synchronized boolean deleteAccount(GringottsAccount acc) {
+    public void forgetCents(String type, String owner) {
+        cents.forget(type, owner);
+    }
+
+    @Override
+    public boolean deleteAccount(GringottsAccount acc) {
         return deleteAccount(acc.owner.getType(), acc.owner.getId());
     }
 
     @Override
-    public synchronized boolean deleteAccount(String type, String account) {
-        SqlUpdate renameAccount = db.sqlUpdate(
-                "DELETE FROM gringotts_account WHERE owner = :account and type = :type"
-        );
+    public boolean deleteAccount(String type, String account) {
+        return locks.with(type, account, () -> removeAccount(type, account));
+    }
+
+    private boolean removeAccount(String type, String account) {
+        cents.discard(type, account);
+
+        SqlUpdate deleteAccount = StorageStatements.deleteAccount(db, type, account);
 
-        renameAccount.setParameter("type", type);
-        renameAccount.setParameter("account", account);
+        // waits for the delete, which is rare and reports whether there was an account to delete
+        if (commit(() -> deleteAccount.execute() > 0)) {
+            accounts.remove(type, account);
 
-        return renameAccount.execute() > 0;
+            return true;
+        }
+
+        return false;
     }
 
     @Override
-    public synchronized boolean deleteAccountChests(GringottsAccount acc) {
-        return deleteAccountChests(acc.owner.getId());
+    public boolean deleteAccountChests(GringottsAccount acc) {
+        return deleteAccountChests(acc.owner.getType(), acc.owner.getId());
     }
 
     @Override
-    public synchronized boolean deleteAccountChests(String account) {
-        allChests.removeIf(chest -> chest.account.owner.getId().equals(account));
-        SqlUpdate renameAccount = db.sqlUpdate(
-                "DELETE FROM gringotts_accountchest WHERE account = :account"
-        );
+    public boolean deleteAccountChests(String type, String account) {
+        return locks.with(type, account, () -> {
+            chests.removeByOwner(type, account);
 
-        renameAccount.setParameter("account", account);
+            SqlUpdate deleteChests = StorageStatements.deleteAccountChests(db, type, account);
 
-        return renameAccount.execute() > 0;
+            // waits for the delete, which is rare and reports whether the account had any vaults
+            return commit(() -> deleteChests.execute() > 0);
+        });
     }
 
     @Override
-    public synchronized void shutdown() {
+    public void shutdown() {
+        flush();
         // probably handled by Bukkit?
     }
 
+    @Override
+    public <V> V atomically(Supplier<V> changes) {
+        epoch.readLock().lock();
+
+        try {
+            return changes.get();
+        } finally {
+            epoch.readLock().unlock();
+
+            if (Configuration.CONF.storageFlushInterval <= 0 && epoch.getReadHoldCount() == 0) {
+                flushLater();
+            }
+        }
+    }
+
+    @Override
+    public <V> CompletableFuture<V> atomicallyAsync(Supplier<CompletableFuture<V>> changes) {
+        synchronized (openLock) {
+            if (draining != null) {
+                return draining.thenComposeAsync(ignored -> atomicallyAsync(changes), SchedulerUtil::runAsync);
+            }
+
+            open++;
+        }
+
+        CompletableFuture<V> result;
+
+        try {
+            result = changes.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        return result.whenComplete((ignored, e) -> closeAtomically());
+    }
+
+    private void closeAtomically() {
+        boolean flushNow;
+
+        synchronized (openLock) {
+            open--;
+            flushNow = open == 0 && (draining != null || Configuration.CONF.storageFlushInterval <= 0);
+        }
+
+        if (flushNow) {
+            flushLater();
+        }
+    }
+
+    @Override
+    public void flush() {
+        // waits for the flush: called periodically off the server thread, and when shutting down
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Flush.FORCE_AFTER_MILLIS);
+
+        try {
+            boolean force = false;
+
+            while (!commit(new Flush(force))) {
+                // changes made together are still open, try again once they are done
+                awaitOpenChanges();
+
+                if (!force && System.nanoTime() - deadline > 0) {
+                    log.warning("Changes made together are still open after " + Flush.FORCE_AFTER_MILLIS
+                            + " ms, writing them as they are.");
+                    force = true;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.log(Level.SEVERE, e.getMessage(), e);
+        }
+    }
+
+    private void awaitOpenChanges() {
+        CompletableFuture<Void> open;
+
+        synchronized (openLock) {
+            open = draining;
+        }
+
+        try {
+            if (open != null) {
+                open.get(Flush.WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } else {
+                Thread.sleep(Flush.WAIT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // try again either way
+        }
+    }
+
+    /**
+     * Queue a flush for the storage writer without waiting for it.
+     */
+    private void flushLater() {
+        StorageExecutor storage = Gringotts.instance.getStorageExecutor();
+
+        if (storage == null) {
+            flush();
+
+            return;
+        }
+
+        Flush flush = new Flush(false);
+
+        storage.write(flush).whenComplete((done, e) -> {
+            // a flush rejected while shutting down is done by the last flush
+            if (e != null && !(e instanceof RejectedExecutionException)) {
+                log.log(Level.SEVERE, e.getMessage(), e);
+            }
+
+            // a flush waiting for open changes is queued again once they are done
+            if (Boolean.FALSE.equals(done) && !flush.waitsForOpen) {
+                SchedulerUtil.runAsyncLater(this::flushLater, Flush.WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    /**
+     * Queue a write for the storage writer without waiting for it. Writes are committed in the order they are queued,
+     * so later writes, waited for or not, see its changes. Once the writer is shut down the write runs right away.
+     *
+     * @param write the write
+     */
+    private void commitLater(StorageExecutor.Write<?> write) {
+        StorageExecutor storage = Gringotts.instance.getStorageExecutor();
+
+        CompletableFuture<?> queued = storage != null
+                ? storage.write(write)
+                : CompletableFuture.failedFuture(new RejectedExecutionException("No storage writer"));
+
+        queued.whenComplete((ignored, e) -> {
+            if (e == null) {
+                return;
+            }
+
+            if (!(e instanceof RejectedExecutionException)) {
+                log.log(Level.SEVERE, "Failed to write to storage",
+                        e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+
+                return;
+            }
+
+            try {
+                commit(write);
+            } catch (RuntimeException failure) {
+                log.log(Level.SEVERE, "Failed to write to storage", failure);
+            }
+        });
+    }
+
+    /**
+     * Run a write on the storage writer and wait until it is committed. Once the writer is shut down nothing else
+     * writes anymore, and the write runs right away in a transaction of its own.
+     *
+     * @param write the write
+     * @param <V>   result type
+     * @return result of the write
+     */
+    private <V> V commit(StorageExecutor.Write<V> write) {
+        StorageExecutor storage = Gringotts.instance.getStorageExecutor();
+
+        if (storage != null) {
+            try {
+                return storage.write(write).join();
+            } catch (CompletionException e) {
+                if (!(e.getCause() instanceof RejectedExecutionException)) {
+                    throw e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+            }
+        }
+
+        try (Transaction transaction = db.beginTransaction()) {
+            V result = write.run();
+
+            transaction.commit();
+            write.committed();
+
+            return result;
+        } catch (RuntimeException e) {
+            write.rolledBack();
+
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the pending account cents and vault balances. Results in whether they were written, or the flush has to
+     * be tried again because changes made together were still open.
+     */
+    private final class Flush implements StorageExecutor.Write<Boolean> {
+        /**
+         * Longest time a flush waits for changes made atomically to finish.
+         */
+        private static final long WAIT_MILLIS = 50;
+        /**
+         * Time after which a waiting flush writes changes made atomically even if they are still open.
+         */
+        private static final long FORCE_AFTER_MILLIS = 5_000;
+
+        private final boolean force;
+
+        private List<CentsCache.Change>         centsChanges = List.of();
+        private List<ChestBalanceWriter.Change> chestChanges = List.of();
+
+        /**
+         * Whether the flush wasn't done because changes made across threads were still open.
+         */
+        private volatile boolean waitsForOpen;
+
+        private Flush(boolean force) {
+            this.force = force;
+        }
+
+        @Override
+        public Boolean run() {
+            boolean locked = tryLock(epoch.writeLock());
+
+            // a change made atomically may be waiting for the writer itself, don't wait for it forever
+            if (!locked && !force) {
+                return false;
+            }
+
+            CompletableFuture<Void> released;
+
+            try {
+                synchronized (openLock) {
+                    // changes made across threads are still open, take them all once the last one is done
+                    if (open > 0 && !force) {
+                        if (draining == null) {
+                            draining = new CompletableFuture<>();
+                        }
+
+                        waitsForOpen = true;
+
+                        return false;
+                    }
+
+                    centsChanges = cents.drain();
+                    chestChanges = chestBalances.drain();
+
+                    released = draining;
+                    draining = null;
+                }
+            } finally {
+                if (locked) {
+                    epoch.writeLock().unlock();
+                }
+            }
+
+            if (released != null) {
+                released.complete(null);
+            }
+
+            List<CentsCache.Change> missing;
+
+            try {
+                missing = cents.write(centsChanges);
+                chestBalances.write(chestChanges);
+            } catch (RuntimeException e) {
+                throw new GringottsStorageException("Failed to write " + centsChanges.size()
+                        + " account balances and " + chestChanges.size() + " vault balances, will retry", e);
+            }
+
+            // the account was deleted without discarding its cents, or never stored
+            for (CentsCache.Change change : missing) {
+                log.warning("Account " + change.type() + ":" + change.owner() + " is not stored, dropped its balance of "
+                        + change.cents() + " cents.");
+                cents.discard(change.type(), change.owner());
+            }
+
+            return true;
+        }
+
+        @Override
+        public void rolledBack() {
+            cents.restore(centsChanges);
+            chestBalances.restore(chestChanges);
+        }
+
+        @Override
+        public void committed() {
+            cents.written(centsChanges);
+        }
+
+        private static boolean tryLock(Lock lock) {
+            try {
+                return lock.tryLock(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                return false;
+            }
+        }
+    }
+
     @Override
     public boolean updateChestBalance(AccountChest chest, long balance) {
-        SqlUpdate updateChest = db.sqlUpdate(
-            "UPDATE gringotts_accountchest SET total_value = :total_value "
-            + "WHERE world = :world and x = :x and y = :y and z = :z"
-        );
+        chestBalances.queue(chest, balance);
 
-        updateChest.setParameter("world", chest.sign.getWorld().getName());
-        updateChest.setParameter("x", chest.sign.getX());
-        updateChest.setParameter("y", chest.sign.getY());
-        updateChest.setParameter("z", chest.sign.getZ());
-        updateChest.setParameter("total_value", balance);
-        return updateChest.execute() > 0;
+        return true;
     }
 }
@@ -3,6 +3,8 @@ package org.gestern.gringotts.data;
 
 import org.gestern.gringotts.AccountChest;
 
+import io.ebean.annotation.DbDefault;
+import io.ebean.annotation.Index;
 import io.ebean.annotation.NotNull;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
@@ -10,6 +12,7 @@ import jakarta.persistence.Table;
 
 @Entity
 @Table(name = "gringotts_pending_operation")
+@Index(columnNames = {"world", "chunk_x", "chunk_z"})
 public class EBeanPendingOperation {
     @Id
     int id;
@@ -23,12 +26,23 @@ public class EBeanPendingOperation {
     int z;
     @NotNull
     long amount;
+    /**
+     * Chunk of the vault sign, so that the operations of a chunk can be looked up when it is loaded.
+     */
+    @NotNull
+    @DbDefault(value = "0")
+    int chunkX;
+    @NotNull
+    @DbDefault(value = "0")
+    int chunkZ;
 
     public EBeanPendingOperation(AccountChest chest, long amount) {
-        world = chest.sign.getWorld().getName();
-        x = chest.sign.getX();
-        y = chest.sign.getY();
-        z = chest.sign.getZ();
+        world = chest.getWorld().getName();
+        x = chest.getX();
+        y = chest.getY();
+        z = chest.getZ();
+        chunkX = x >> 4;
+        chunkZ = z >> 4;
         this.amount = amount;
     }
 
@@ -86,10 +100,18 @@ public class EBeanPendingOperation {
     }
 
     public int getChunkX() {
-        return x/16;
+        return chunkX;
+    }
+
+    public void setChunkX(int chunkX) {
+        this.chunkX = chunkX;
     }
 
     public int getChunkZ() {
-        return z/16;
+        return chunkZ;
+    }
+
+    public void setChunkZ(int chunkZ) {
+        this.chunkZ = chunkZ;
     }
 }
\ No newline at end of file
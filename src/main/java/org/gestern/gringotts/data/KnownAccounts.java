@@ -0,0 +1,43 @@
+package org.gestern.gringotts.data;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Set of the accounts in {@code gringotts_account}, by type and owner.
+ * <p>
+ * Loaded once with all stored accounts and then kept in sync by the DAO whenever it creates, renames or deletes an
+ * account, so checking whether an account exists never touches storage. Like the {@code ieq} lookups it replaces, keys
+ * are case-insensitive.
+ */
+final class KnownAccounts {
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+    boolean contains(String type, String owner) {
+        return keys.contains(key(type, owner));
+    }
+
+    void add(String type, String owner) {
+        keys.add(key(type, owner));
+    }
+
+    void remove(String type, String owner) {
+        keys.remove(key(type, owner));
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    /**
+     * Key identifying an account, the same for every spelling of its type and owner.
+     *
+     * @param type  account type
+     * @param owner account owner id
+     * @return the account key
+     */
+    static String key(String type, String owner) {
+        return type.toLowerCase(Locale.ROOT) + ':' + owner.toLowerCase(Locale.ROOT);
+    }
+}
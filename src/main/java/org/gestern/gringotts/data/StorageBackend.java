@@ -0,0 +1,233 @@
+package org.gestern.gringotts.data;
+
+import java.util.Locale;
+import java.util.Properties;
+
+import org.gestern.gringotts.Configuration;
+import org.gestern.gringotts.GringottsStorageException;
+
+import io.ebean.Database;
+import io.ebean.DatabaseFactory;
+import io.ebean.Transaction;
+import io.ebean.config.DatabaseConfig;
+import io.ebean.datasource.DataSourceConfig;
+
+/**
+ * The database accounts are stored in: by default an SQLite file in the plugin folder, otherwise any database with
+ * one of the supported dialects, reached over JDBC.
+ * <p>
+ * The dialect decides which migrations are run, and the JDBC driver and isolation level used unless they are
+ * configured. SQLite keeps serializable transactions, and its default file can be switched to write-ahead logging, so
+ * that reads don't wait for the writer. Server databases default to read committed: all writes go through the single
+ * storage writer, so stricter levels would only make reads take locks the writer then waits for.
+ * <p>
+ * Only the SQLite driver comes with the plugin. The drivers of server databases, and the Ebean platforms for them, are
+ * installed by the server owner.
+ * <p>
+ * Unless configured, the connection pool has one connection per storage reader, one for the storage writer and one
+ * for reads on other threads, like loading all vaults at startup. All but the last are kept open, so a burst of reads
+ * doesn't wait for new connections.
+ */
+public final class StorageBackend {
+    /**
+     * Connections kept open besides one per storage reader: the storage writer's.
+     */
+    private static final int WRITERS = 1;
+
+    /**
+     * SQL dialects the migrations and raw statements are written for.
+     */
+    public enum Dialect {
+        SQLITE("sqlite", "org.sqlite.JDBC", Transaction.SERIALIZABLE, "jdbc:sqlite:"),
+        MYSQL("mysql", "com.mysql.cj.jdbc.Driver", Transaction.READ_COMMITTED, "jdbc:mysql:"),
+        // MariaDB understands the MySQL migrations
+        MARIADB("mysql", "org.mariadb.jdbc.Driver", Transaction.READ_COMMITTED, "jdbc:mariadb:"),
+        POSTGRES("postgres", "org.postgresql.Driver", Transaction.READ_COMMITTED, "jdbc:postgresql:");
+
+        private final String migrations;
+        private final String driver;
+        private final int    isolation;
+        private final String urlPrefix;
+
+        Dialect(String migrations, String driver, int isolation, String urlPrefix) {
+            this.migrations = migrations;
+            this.driver = driver;
+            this.isolation = isolation;
+            this.urlPrefix = urlPrefix;
+        }
+
+        /**
+         * @return classpath folder holding the migrations of this dialect
+         */
+        public String getMigrationPath() {
+            return "dbmigration/" + migrations;
+        }
+
+        /**
+         * @return JDBC driver used unless one is configured
+         */
+        public String getDriver() {
+            return driver;
+        }
+
+        /**
+         * @return isolation level used unless one is configured
+         */
+        public int getIsolation() {
+            return isolation;
+        }
+
+        /**
+         * Find a dialect by its name, or else by the JDBC URL.
+         *
+         * @param name name of the dialect, may be empty
+         * @param url  JDBC URL of the database
+         * @return the dialect
+         * @throws GringottsStorageException if no dialect has that name, or none is named and the URL is not one of a
+         *                                   supported database
+         */
+        public static Dialect of(String name, String url) {
+            if (!name.isEmpty()) {
+                try {
+                    return valueOf(name.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new GringottsStorageException("Unknown database dialect: " + name
+                            + ". Supported are sqlite, mysql, mariadb and postgres.");
+                }
+            }
+
+            for (Dialect dialect : values()) {
+                if (url.startsWith(dialect.urlPrefix)) {
+                    return dialect;
+                }
+            }
+
+            throw new GringottsStorageException("Can't tell the database dialect from its URL, "
+                    + "set storage.database.dialect to sqlite, mysql, mariadb or postgres.");
+        }
+    }
+
+    private final Dialect          dialect;
+    private final DataSourceConfig dataSource;
+
+    private StorageBackend(Dialect dialect, DataSourceConfig dataSource) {
+        this.dialect = dialect;
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Set up the backend configured in {@link Configuration#CONF}.
+     *
+     * @param sqliteFile path of the SQLite file used when no database URL is configured
+     * @return the backend
+     * @throws GringottsStorageException if the configured dialect or isolation level is unknown
+     */
+    public static StorageBackend fromConfig(String sqliteFile) {
+        Configuration conf = Configuration.CONF;
+
+        String  url;
+        Dialect dialect;
+
+        if (conf.storageUrl.isEmpty()) {
+            // the journal mode is stored in the file, and write-ahead logging adds files next to it
+            url = "jdbc:sqlite:" + sqliteFile + "?busy_timeout=5000"
+                    + (conf.storageSqliteWal ? "&journal_mode=WAL" : "");
+            dialect = Dialect.SQLITE;
+        } else {
+            url = conf.storageUrl;
+            dialect = Dialect.of(conf.storageDialect, url);
+        }
+
+        DataSourceConfig dataSource = new DataSourceConfig();
+        dataSource.setUrl(url);
+        dataSource.setDriver(conf.storageDriver.isEmpty() ? dialect.getDriver() : conf.storageDriver);
+
+        if (dialect == Dialect.SQLITE && conf.storageUsername.isEmpty()) {
+            // SQLite ignores them, the pool needs some
+            dataSource.setUsername("bukkit");
+            dataSource.setPassword("walrus");
+        } else {
+            dataSource.setUsername(conf.storageUsername);
+            dataSource.setPassword(conf.storagePassword);
+        }
+
+        dataSource.setIsolationLevel(conf.storageIsolation.isEmpty()
+                ? dialect.getIsolation()
+                : isolation(conf.storageIsolation));
+
+        int readers = Math.max(1, conf.storageReaders);
+        int pool    = conf.storagePoolSize > 0 ? conf.storagePoolSize : readers + WRITERS + 1;
+
+        dataSource.setMinConnections(Math.min(pool, readers + WRITERS));
+        dataSource.setMaxConnections(pool);
+
+        return new StorageBackend(dialect, dataSource);
+    }
+
+    /**
+     * @return the dialect of the database
+     */
+    public Dialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * @return maximum number of pooled connections
+     */
+    public int getPoolSize() {
+        return dataSource.getMaxConnections();
+    }
+
+    /**
+     * Connect to the database and bring its tables up to date.
+     *
+     * @param classLoader class loader Ebean finds the drivers, platforms and migrations with
+     * @return the database
+     * @throws GringottsStorageException if the JDBC driver is not installed, or connecting or migrating fails
+     */
+    public Database open(ClassLoader classLoader) {
+        try {
+            Class.forName(dataSource.getDriver(), false, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new GringottsStorageException("The JDBC driver " + dataSource.getDriver() + " of the "
+                    + dialect.name().toLowerCase(Locale.ROOT) + " database is not installed, see storage.database in "
+                    + "the configuration documentation for how to add it.", e);
+        }
+
+        DatabaseConfig cfg        = new DatabaseConfig();
+        Properties     properties = new Properties();
+
+        properties.setProperty("ebean.migration.migrationPath", dialect.getMigrationPath());
+
+        cfg.setDataSourceConfig(dataSource);
+        cfg.setDdlGenerate(true);
+        cfg.setDdlRun(true);
+        cfg.setRunMigration(true);
+        cfg.setClasses(EBeanDAO.getDatabaseClasses());
+
+        cfg.loadFromProperties(properties);
+
+        ClassLoader previousCL = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(classLoader);
+
+        try {
+            return DatabaseFactory.create(cfg);
+        } catch (RuntimeException e) {
+            throw new GringottsStorageException("Failed to open the " + dialect.name().toLowerCase(Locale.ROOT)
+                    + " database: " + e.getMessage(), e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(previousCL);
+        }
+    }
+
+    private static int isolation(String name) {
+        return switch (name.toLowerCase(Locale.ROOT).replace('-', '_')) {
+            case "read_uncommitted" -> Transaction.READ_UNCOMMITTED;
+            case "read_committed" -> Transaction.READ_COMMITTED;
+            case "repeatable_read" -> Transaction.REPEATABLE_READ;
+            case "serializable" -> Transaction.SERIALIZABLE;
+            default -> throw new GringottsStorageException("Unknown isolation level: " + name
+                    + ". Supported are read_uncommitted, read_committed, repeatable_read and serializable.");
+        };
+    }
+}
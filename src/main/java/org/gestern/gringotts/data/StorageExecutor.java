@@ -0,0 +1,464 @@
+package org.gestern.gringotts.data;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import io.ebean.Database;
+import io.ebean.Transaction;
+
+/**
+ * Runs storage I/O off the server thread, instead of on the common fork-join pool shared with every other plugin.
+ * <p>
+ * Reads run on a fixed number of reader threads. Reads waiting for a reader are queued up to a bound; a read submitted
+ * while the queue is full is rejected rather than queued without limit.
+ * <p>
+ * Writes are queued for a single writer thread and run in the order they were submitted. The writer commits them in
+ * groups: it takes whatever is queued within a short window and runs all of it in one transaction, so a burst of
+ * writes costs a few commits, and on SQLite a few syncs to disk, instead of one each. A write's future completes once
+ * its group is committed. If any write of a group fails, the group is rolled back and its writes are retried one by
+ * one, so a failing write doesn't take the others down with it.
+ * <p>
+ * Reads and writes both keep metrics: tasks waiting to run, tasks running, and the time from submitting a task until
+ * it is done, which for writes includes the commit.
+ * <p>
+ * All threads are platform threads: JDBC drivers synchronize internally, which would pin a virtual thread to its
+ * carrier for every blocking call anyway.
+ */
+public final class StorageExecutor {
+    /**
+     * Most writes committed together.
+     */
+    private static final int MAX_GROUP = 1024;
+    /**
+     * Reads queued per reader thread before further reads are rejected.
+     */
+    private static final int QUEUED_READS_PER_READER = 256;
+
+    private final Database db;
+    private final long     window;
+    private final Lane     reads;
+
+    private final BlockingQueue<Queued<?>> writes = new LinkedBlockingQueue<>();
+    private final Thread                   writer;
+
+    /**
+     * Whether writes are accepted. Guarded by {@link #writes}.
+     */
+    private boolean accepting = true;
+
+    private final AtomicInteger writing         = new AtomicInteger();
+    private final LongAdder     written         = new LongAdder();
+    private final LongAdder     writeLatency    = new LongAdder();
+    private final AtomicLong    maxWriteLatency = new AtomicLong();
+    private final LongAdder     commits         = new LongAdder();
+
+    /**
+     * A write run by the writer thread, inside the transaction of its group.
+     *
+     * @param <V> result type
+     */
+    @FunctionalInterface
+    public interface Write<V> {
+        /**
+         * Make the changes. Runs inside the transaction of the write's group, and again in a transaction of its own
+         * if the group is rolled back.
+         *
+         * @return result of the write
+         */
+        V run();
+
+        /**
+         * Undo what {@link #run()} did outside storage, after its changes were rolled back.
+         */
+        default void rolledBack() {
+        }
+
+        /**
+         * Note outside storage that the changes of {@link #run()} are committed.
+         */
+        default void committed() {
+        }
+    }
+
+    /**
+     * @param db           the database
+     * @param readers      maximum number of reads running at the same time
+     * @param windowMillis time in milliseconds the writer collects writes for a group before committing it
+     */
+    public StorageExecutor(Database db, int readers, long windowMillis) {
+        this.db = db;
+        this.window = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMillis));
+        this.reads = new Lane(Math.max(1, readers));
+        this.writer = Thread.ofPlatform().name("Gringotts storage writer").daemon(true).start(this::writeLoop);
+    }
+
+    /**
+     * Run a read on a storage reader thread. A read submitted from a storage reader itself runs right away, as part
+     * of the read submitting it, so that it doesn't wait for a reader that may never become free.
+     *
+     * @param task the read
+     * @param <V>  result type
+     * @return future completed with the result of the read, or failed if it threw, too many reads are queued or the
+     * executor is shut down
+     */
+    public <V> CompletableFuture<V> read(Supplier<V> task) {
+        if (reads.isCurrent()) {
+            try {
+                return CompletableFuture.completedFuture(task.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        return reads.submit(task);
+    }
+
+    /**
+     * Queue a write for the storage writer thread. Writes run one at a time, in the order they were submitted.
+     * A write submitted from the writer thread itself runs right away, as part of the write submitting it.
+     *
+     * @param write the write
+     * @param <V>   result type
+     * @return future completed with the result of the write once it is committed, or failed if it threw or the
+     * executor is shut down
+     */
+    public <V> CompletableFuture<V> write(Write<V> write) {
+        if (Thread.currentThread() == writer) {
+            try {
+                return CompletableFuture.completedFuture(write.run());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        Queued<V> queued = new Queued<>(write);
+
+        synchronized (writes) {
+            if (!accepting) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException("Storage writer is shut down"));
+            }
+
+            writes.add(queued);
+        }
+
+        return queued.future;
+    }
+
+    /**
+     * Stop accepting tasks and wait for queued ones to finish.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of the timeout
+     * @return whether all tasks finished in time
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        reads.executor.shutdown();
+
+        synchronized (writes) {
+            if (accepting) {
+                accepting = false;
+                writes.add(Queued.STOP);
+            }
+        }
+
+        return reads.executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+                && writer.join(Duration.ofNanos(Math.max(1, deadline - System.nanoTime())));
+    }
+
+    /**
+     * @return metrics of the reads
+     */
+    public Metrics getReadMetrics() {
+        return reads.metrics();
+    }
+
+    /**
+     * @return metrics of the writes
+     */
+    public Metrics getWriteMetrics() {
+        long count = written.sum();
+
+        return new Metrics(
+                writes.size(),
+                writing.get(),
+                count,
+                count == 0 ? 0 : writeLatency.sum() / count,
+                maxWriteLatency.get()
+        );
+    }
+
+    /**
+     * @return number of transactions the writer committed since startup
+     */
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    /**
+     * Snapshot of the metrics of reads or writes.
+     *
+     * @param queued              tasks submitted, but not started yet
+     * @param active              tasks running
+     * @param completed           tasks done since startup
+     * @param averageLatencyNanos average time from submitting a task until it was done
+     * @param maxLatencyNanos     longest time from submitting a task until it was done
+     */
+    public record Metrics(int queued, int active, long completed, long averageLatencyNanos, long maxLatencyNanos) {
+    }
+
+    private void writeLoop() {
+        List<Queued<?>> group    = new ArrayList<>();
+        boolean         stopping = false;
+
+        while (!stopping) {
+            Queued<?> first;
+
+            try {
+                first = writes.take();
+            } catch (InterruptedException e) {
+                // only stop once everything queued before the stop is written
+                continue;
+            }
+
+            if (first == Queued.STOP) {
+                break;
+            }
+
+            group.add(first);
+
+            long deadline = System.nanoTime() + window;
+
+            while (group.size() < MAX_GROUP) {
+                Queued<?> next = writes.poll();
+
+                if (next == null) {
+                    long left = deadline - System.nanoTime();
+
+                    if (left <= 0) {
+                        break;
+                    }
+
+                    try {
+                        next = writes.poll(left, TimeUnit.NANOSECONDS);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+
+                    if (next == null) {
+                        break;
+                    }
+                }
+
+                if (next == Queued.STOP) {
+                    stopping = true;
+
+                    break;
+                }
+
+                group.add(next);
+            }
+
+            commit(group);
+            group.clear();
+        }
+    }
+
+    /**
+     * Run a group of writes in one transaction, or one by one if the group fails.
+     */
+    private void commit(List<Queued<?>> group) {
+        if (run(group) == null) {
+            for (Queued<?> queued : group) {
+                queued.write.committed();
+                done(queued);
+            }
+
+            return;
+        }
+
+        // nothing of the group was written
+        for (Queued<?> queued : group) {
+            queued.write.rolledBack();
+        }
+
+        for (Queued<?> queued : group) {
+            RuntimeException failure = run(List.of(queued));
+
+            if (failure != null) {
+                queued.write.rolledBack();
+                queued.failure = failure;
+            } else {
+                queued.write.committed();
+            }
+
+            done(queued);
+        }
+    }
+
+    /**
+     * Run writes in one transaction.
+     *
+     * @return null if the transaction was committed, otherwise why it wasn't
+     */
+    private RuntimeException run(List<Queued<?>> group) {
+        writing.set(group.size());
+
+        try (Transaction transaction = db.beginTransaction()) {
+            for (Queued<?> queued : group) {
+                queued.run();
+            }
+
+            transaction.commit();
+            commits.increment();
+
+            return null;
+        } catch (RuntimeException e) {
+            return e;
+        } finally {
+            writing.set(0);
+        }
+    }
+
+    private void done(Queued<?> queued) {
+        long nanos = System.nanoTime() - queued.submitted;
+
+        written.increment();
+        writeLatency.add(nanos);
+        maxWriteLatency.accumulateAndGet(nanos, Math::max);
+
+        queued.complete();
+    }
+
+    private static final class Queued<V> {
+        /**
+         * Queued last when the executor shuts down.
+         */
+        private static final Queued<Void> STOP = new Queued<>(() -> null);
+
+        private final Write<V>             write;
+        private final CompletableFuture<V> future    = new CompletableFuture<>();
+        private final long                 submitted = System.nanoTime();
+
+        private V                result;
+        private RuntimeException failure;
+
+        private Queued(Write<V> write) {
+            this.write = write;
+        }
+
+        private void run() {
+            result = write.run();
+        }
+
+        private void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    private static final class Lane {
+        /**
+         * Lane whose task the current thread is running.
+         */
+        private static final ThreadLocal<Lane> CURRENT = new ThreadLocal<>();
+
+        private final ThreadPoolExecutor executor;
+
+        private final AtomicInteger queued     = new AtomicInteger();
+        private final AtomicInteger active     = new AtomicInteger();
+        private final LongAdder     completed  = new LongAdder();
+        private final LongAdder     latency    = new LongAdder();
+        private final AtomicLong    maxLatency = new AtomicLong();
+
+        private Lane(int threads) {
+            this.executor = new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    0,
+                    TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(threads * QUEUED_READS_PER_READER),
+                    Thread.ofPlatform().name("Gringotts storage reader-", 0).daemon(true).factory(),
+                    // a full queue means storage can't keep up, fail the read instead of piling up more
+                    new ThreadPoolExecutor.AbortPolicy()
+            );
+        }
+
+        private <V> CompletableFuture<V> submit(Supplier<V> task) {
+            CompletableFuture<V> future    = new CompletableFuture<>();
+            long                 submitted = System.nanoTime();
+
+            queued.incrementAndGet();
+
+            try {
+                executor.execute(() -> {
+                    queued.decrementAndGet();
+                    active.incrementAndGet();
+                    CURRENT.set(this);
+
+                    V         result  = null;
+                    Throwable failure = null;
+
+                    try {
+                        result = task.get();
+                    } catch (Throwable e) {
+                        failure = e;
+                    } finally {
+                        CURRENT.remove();
+                        active.decrementAndGet();
+
+                        long nanos = System.nanoTime() - submitted;
+
+                        completed.increment();
+                        latency.add(nanos);
+                        maxLatency.accumulateAndGet(nanos, Math::max);
+                    }
+
+                    // complete after counting the read as done, dependent stages run on this thread
+                    if (failure != null) {
+                        future.completeExceptionally(failure);
+                    } else {
+                        future.complete(result);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                queued.decrementAndGet();
+                future.completeExceptionally(e);
+            }
+
+            return future;
+        }
+
+        private boolean isCurrent() {
+            return CURRENT.get() == this;
+        }
+
+        private Metrics metrics() {
+            long count = completed.sum();
+
+            return new Metrics(
+                    queued.get(),
+                    active.get(),
+                    count,
+                    count == 0 ? 0 : latency.sum() / count,
+                    maxLatency.get()
+            );
+        }
+    }
+}
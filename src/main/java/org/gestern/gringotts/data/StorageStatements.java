@@ -0,0 +1,270 @@
+package org.gestern.gringotts.data;
+
+import java.util.Map;
+
+import io.ebean.Database;
+import io.ebean.SqlUpdate;
+
+/**
+ * The raw SQL statements of the DAO and the pending operations, with their parameters bound.
+ * <p>
+ * They are kept in one place so that the statements checked against every supported dialect are the ones the plugin
+ * runs, with the same parameter types.
+ */
+public final class StorageStatements {
+    private StorageStatements() {
+    }
+
+    /**
+     * Insert an account without cents.
+     * <p>
+     * Unlike saving a bean, running the statement again after its transaction was rolled back inserts the account
+     * again, so it can be retried by the storage writer.
+     *
+     * @param db    the database
+     * @param type  account type
+     * @param owner account owner id
+     * @return the statement
+     */
+    static SqlUpdate insertAccount(Database db, String type, String owner) {
+        SqlUpdate storeAccount = db.sqlUpdate(
+                "insert into gringotts_account (type,owner,cents) values (:type, :owner, 0)"
+        );
+
+        storeAccount.setParameter("type", type);
+        storeAccount.setParameter("owner", owner);
+
+        return storeAccount;
+    }
+
+    /**
+     * Insert a vault, owned by an existing account.
+     *
+     * @param db         the database
+     * @param world      world name
+     * @param x          sign x
+     * @param y          sign y
+     * @param z          sign z
+     * @param type       account type
+     * @param owner      account owner id
+     * @param totalValue cached balance of the vault
+     * @return the statement
+     */
+    static SqlUpdate insertChest(Database db, String world, int x, int y, int z, String type, String owner,
+                                 long totalValue) {
+        SqlUpdate storeChest = db.sqlUpdate(
+                "insert into gringotts_accountchest (world,x,y,z,account,total_value) " +
+                "values (:world, :x, :y, :z, (select id from gringotts_account where owner=:owner and " +
+                "type=:type), :total_value)"
+        );
+
+        storeChest.setParameter("world", world);
+        storeChest.setParameter("x", x);
+        storeChest.setParameter("y", y);
+        storeChest.setParameter("z", z);
+        storeChest.setParameter("owner", owner);
+        storeChest.setParameter("type", type);
+        storeChest.setParameter("total_value", totalValue);
+
+        return storeChest;
+    }
+
+    /**
+     * Delete the vault with its sign at the given position.
+     *
+     * @param db    the database
+     * @param world world name
+     * @param x     sign x
+     * @param y     sign y
+     * @param z     sign z
+     * @return the statement
+     */
+    static SqlUpdate deleteChest(Database db, String world, int x, int y, int z) {
+        SqlUpdate deleteChest = db.sqlUpdate(
+                "delete from gringotts_accountchest where world = :world and x = :x and y = :y and z = :z"
+        );
+
+        deleteChest.setParameter("world", world);
+        deleteChest.setParameter("x", x);
+        deleteChest.setParameter("y", y);
+        deleteChest.setParameter("z", z);
+
+        return deleteChest;
+    }
+
+    /**
+     * Delete all vaults of an account.
+     *
+     * @param db    the database
+     * @param type  account type
+     * @param owner account owner id
+     * @return the statement
+     */
+    static SqlUpdate deleteAccountChests(Database db, String type, String owner) {
+        SqlUpdate deleteChests = db.sqlUpdate(
+                "DELETE FROM gringotts_accountchest WHERE account = "
+                + "(select id from gringotts_account where owner = :owner and type = :type)"
+        );
+
+        deleteChests.setParameter("owner", owner);
+        deleteChests.setParameter("type", type);
+
+        return deleteChests;
+    }
+
+    /**
+     * Give an account a new owner id.
+     *
+     * @param db      the database
+     * @param type    account type
+     * @param oldName current owner id
+     * @param newName new owner id
+     * @return the statement
+     */
+    static SqlUpdate renameAccount(Database db, String type, String oldName, String newName) {
+        SqlUpdate renameAccount = db.sqlUpdate(
+                "UPDATE gringotts_account SET owner = :newName WHERE owner = :oldName and type = :type"
+        );
+
+        renameAccount.setParameter("type", type);
+        renameAccount.setParameter("oldName", oldName);
+        renameAccount.setParameter("newName", newName);
+
+        return renameAccount;
+    }
+
+    /**
+     * Delete an account.
+     *
+     * @param db    the database
+     * @param type  account type
+     * @param owner account owner id
+     * @return the statement
+     */
+    static SqlUpdate deleteAccount(Database db, String type, String owner) {
+        SqlUpdate deleteAccount = db.sqlUpdate(
+                "DELETE FROM gringotts_account WHERE owner = :account and type = :type"
+        );
+
+        deleteAccount.setParameter("type", type);
+        deleteAccount.setParameter("account", owner);
+
+        return deleteAccount;
+    }
+
+    /**
+     * Statement updating the balances of vaults, to be filled by {@link #addChestBalance}.
+     *
+     * @param db the database
+     * @return the statement
+     */
+    static SqlUpdate updateChestBalances(Database db) {
+        return db.sqlUpdate(
+                "UPDATE gringotts_accountchest SET total_value = :total_value "
+                + "WHERE world = :world and x = :x and y = :y and z = :z"
+        );
+    }
+
+    /**
+     * Add the balance of a vault to a batch of {@link #updateChestBalances}.
+     *
+     * @param update     the statement
+     * @param world      world name
+     * @param x          sign x
+     * @param y          sign y
+     * @param z          sign z
+     * @param totalValue balance of the vault
+     */
+    static void addChestBalance(SqlUpdate update, String world, int x, int y, int z, long totalValue) {
+        update.setParameter("world", world);
+        update.setParameter("x", x);
+        update.setParameter("y", y);
+        update.setParameter("z", z);
+        update.setParameter("total_value", totalValue);
+        update.addBatch();
+    }
+
+    /**
+     * Add an amount to the pending operation stored for a vault.
+     *
+     * @param db     the database
+     * @param world  world name
+     * @param x      sign x
+     * @param y      sign y
+     * @param z      sign z
+     * @param amount amount to add
+     * @return the statement, updating no row if no operation is stored for the vault
+     */
+    public static SqlUpdate netPendingOperation(Database db, String world, int x, int y, int z, long amount) {
+        SqlUpdate net = db.sqlUpdate(
+                "UPDATE gringotts_pending_operation SET amount = amount + :amount "
+                + "WHERE world = :world and x = :x and y = :y and z = :z"
+        );
+
+        net.setParameter("amount", amount);
+        net.setParameter("world", world);
+        net.setParameter("x", x);
+        net.setParameter("y", y);
+        net.setParameter("z", z);
+
+        return net;
+    }
+
+    /**
+     * Store a pending operation for a vault that has none yet.
+     *
+     * @param db     the database
+     * @param world  world name
+     * @param x      sign x
+     * @param y      sign y
+     * @param z      sign z
+     * @param amount amount of the operation
+     * @return the statement
+     */
+    public static SqlUpdate insertPendingOperation(Database db, String world, int x, int y, int z, long amount) {
+        SqlUpdate insert = db.sqlUpdate(
+                "INSERT INTO gringotts_pending_operation (world, x, y, z, amount, chunk_x, chunk_z) "
+                + "VALUES (:world, :x, :y, :z, :amount, :chunk_x, :chunk_z)"
+        );
+
+        insert.setParameter("world", world);
+        insert.setParameter("x", x);
+        insert.setParameter("y", y);
+        insert.setParameter("z", z);
+        insert.setParameter("amount", amount);
+        insert.setParameter("chunk_x", x >> 4);
+        insert.setParameter("chunk_z", z >> 4);
+
+        return insert;
+    }
+
+    /**
+     * Subtract applied amounts from stored pending operations and delete the ones that are settled.
+     *
+     * @param db      the database
+     * @param applied applied amount by operation id
+     */
+    public static void settlePendingOperations(Database db, Map<Integer, Long> applied) {
+        SqlUpdate subtract = db.sqlUpdate(
+                "UPDATE gringotts_pending_operation SET amount = amount - :amount WHERE id = :id"
+        );
+        SqlUpdate delete = db.sqlUpdate(
+                "DELETE FROM gringotts_pending_operation WHERE id = :id and amount = 0"
+        );
+
+        for (Map.Entry<Integer, Long> entry : applied.entrySet()) {
+            subtract.setParameter("amount", entry.getValue());
+            subtract.setParameter("id", entry.getKey());
+            subtract.addBatch();
+        }
+
+        subtract.executeBatch();
+
+        for (Integer id : applied.keySet()) {
+            delete.setParameter("id", id);
+            delete.addBatch();
+        }
+
+        delete.executeBatch();
+    }
+}
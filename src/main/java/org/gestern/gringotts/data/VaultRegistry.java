@@ -0,0 +1,475 @@
+package org.gestern.gringotts.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.bukkit.Location;
+import org.gestern.gringotts.AccountChest;
+
+/**
+ * In-memory spatial index of all registered vaults.
+ * <p>
+ * Vaults are indexed per world by the packed chunk coordinate of their sign and by the packed block position of
+ * their sign and container blocks, so that "is this block part of a vault?" and "which vaults are in this chunk?"
+ * can be answered without walking every vault on the server.
+ * <p>
+ * Vaults are also indexed by their owning account, so per-account lookups cost the number of vaults that account owns.
+ * <p>
+ * Reads are lock-free. Mutations are rare (vault creation and destruction) and are serialized on the registry.
+ */
+public final class VaultRegistry {
+    /**
+     * Maximum horizontal distance between a vault sign and any of its container blocks:
+     * one block to the attached container and one more to the other half of a double chest.
+     */
+    private static final int CONTAINER_REACH = 2;
+
+    private final Map<UUID, WorldVaults> worlds = new ConcurrentHashMap<>();
+    private final Set<AccountChest> all = ConcurrentHashMap.newKeySet();
+    private final Map<String, List<AccountChest>> byOwner = new ConcurrentHashMap<>();
+
+    /**
+     * Pack a block position into a single long.
+     *
+     * @param x block x
+     * @param y block y
+     * @param z block z
+     * @return the packed block position
+     */
+    public static long blockKey(int x, int y, int z) {
+        return ((long) x & 0x7FFFFFFL) | (((long) z & 0x7FFFFFFL) << 27) | ((long) y << 54);
+    }
+
+    /**
+     * @param key a block position packed by {@link #blockKey}
+     * @return block x
+     */
+    public static int blockX(long key) {
+        return (int) (key << 37 >> 37);
+    }
+
+    /**
+     * @param key a block position packed by {@link #blockKey}
+     * @return block y
+     */
+    public static int blockY(long key) {
+        return (int) (key >> 54);
+    }
+
+    /**
+     * @param key a block position packed by {@link #blockKey}
+     * @return block z
+     */
+    public static int blockZ(long key) {
+        return (int) (key << 10 >> 37);
+    }
+
+    /**
+     * Pack a chunk coordinate into a single long.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return the packed chunk coordinate
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX & 0xFFFFFFFFL) | (((long) chunkZ & 0xFFFFFFFFL) << 32);
+    }
+
+    /**
+     * Key identifying an account owner in the per-owner index. Like the accounts themselves, keys are
+     * case-insensitive, so every spelling of an owner finds the same vaults.
+     *
+     * @param type owner type
+     * @param id   owner id
+     * @return the owner key
+     */
+    public static String ownerKey(String type, String id) {
+        return KnownAccounts.key(type, id);
+    }
+
+    /**
+     * Register a vault. A vault previously registered with the same sign is replaced.
+     *
+     * @param chest the vault to register
+     */
+    public synchronized void add(AccountChest chest) {
+        UUID world = chest.getWorldId();
+
+        remove(world, chest.getX(), chest.getY(), chest.getZ());
+
+        WorldVaults vaults = worlds.computeIfAbsent(world, w -> new WorldVaults());
+
+        vaults.blocks.put(blockKey(chest.getX(), chest.getY(), chest.getZ()), chest);
+        vaults.chunks.computeIfAbsent(chunkKey(chest.getX() >> 4, chest.getZ() >> 4), k -> ConcurrentHashMap.newKeySet())
+                .add(chest);
+
+        all.add(chest);
+        indexOwners(List.of(chest));
+    }
+
+    /**
+     * Register a batch of vaults at once, e.g. when loading them from storage.
+     *
+     * @param chests the vaults to register
+     */
+    public synchronized void addAll(Collection<AccountChest> chests) {
+        List<AccountChest> added = new ArrayList<>(chests.size());
+
+        for (AccountChest chest : chests) {
+            WorldVaults vaults = worlds.computeIfAbsent(chest.getWorldId(), w -> new WorldVaults());
+
+            if (vaults.blocks.putIfAbsent(blockKey(chest.getX(), chest.getY(), chest.getZ()), chest) != null) {
+                continue;
+            }
+
+            vaults.chunks.computeIfAbsent(chunkKey(chest.getX() >> 4, chest.getZ() >> 4), k -> ConcurrentHashMap.newKeySet())
+                    .add(chest);
+
+            added.add(chest);
+        }
+
+        all.addAll(added);
+        indexOwners(added);
+    }
+
+    /**
+     * Unregister the vault whose sign is at the given position.
+     *
+     * @param world world id
+     * @param x     sign x
+     * @param y     sign y
+     * @param z     sign z
+     * @return the removed vault, or null if there was no vault with its sign at that position
+     */
+    public synchronized AccountChest remove(UUID world, int x, int y, int z) {
+        WorldVaults vaults = worlds.get(world);
+
+        if (vaults == null) {
+            return null;
+        }
+
+        AccountChest chest = vaults.blocks.get(blockKey(x, y, z));
+
+        if (chest == null || !isSignAt(chest, x, y, z)) {
+            return null;
+        }
+
+        unindex(vaults, chest);
+        unindexOwners(List.of(chest));
+
+        return chest;
+    }
+
+    /**
+     * Unregister every vault matching the given predicate.
+     *
+     * @param filter predicate selecting the vaults to remove
+     * @return true if any vault was removed
+     */
+    public synchronized boolean removeIf(Predicate<AccountChest> filter) {
+        List<AccountChest> removed = new ArrayList<>();
+
+        for (AccountChest chest : all) {
+            if (filter.test(chest)) {
+                WorldVaults vaults = worlds.get(chest.getWorldId());
+
+                if (vaults != null) {
+                    unindex(vaults, chest);
+                }
+
+                removed.add(chest);
+            }
+        }
+
+        unindexOwners(removed);
+
+        return !removed.isEmpty();
+    }
+
+    /**
+     * Unregister every vault owned by the given account owner.
+     *
+     * @param type owner type
+     * @param id   owner id
+     * @return true if any vault was removed
+     */
+    public synchronized boolean removeByOwner(String type, String id) {
+        List<AccountChest> owned = byOwner.remove(ownerKey(type, id));
+
+        if (owned == null) {
+            return false;
+        }
+
+        for (AccountChest chest : owned) {
+            WorldVaults vaults = worlds.get(chest.getWorldId());
+
+            if (vaults != null) {
+                unindex(vaults, chest);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Remove all vaults from the registry.
+     */
+    public synchronized void clear() {
+        worlds.clear();
+        all.clear();
+        byOwner.clear();
+    }
+
+    /**
+     * Get the vault that the given block belongs to, either as its sign or as one of its containers.
+     *
+     * @param location location of the block
+     * @return the vault the block belongs to, or null if it is not part of a vault
+     */
+    public AccountChest getAt(Location location) {
+        if (location == null || location.getWorld() == null) {
+            return null;
+        }
+
+        return getAt(location.getWorld().getUID(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * Get the vault that the given block belongs to, either as its sign or as one of its containers.
+     *
+     * @param world world id
+     * @param x     block x
+     * @param y     block y
+     * @param z     block z
+     * @return the vault the block belongs to, or null if it is not part of a vault
+     */
+    public AccountChest getAt(UUID world, int x, int y, int z) {
+        WorldVaults vaults = worlds.get(world);
+
+        if (vaults == null) {
+            return null;
+        }
+
+        long key = blockKey(x, y, z);
+        AccountChest chest = vaults.blocks.get(key);
+
+        if (chest != null) {
+            // the container behind a vault can change, so a remembered container block is re-validated against the
+            // containers resolved since they were last forgotten, and dropped if its vault was removed meanwhile
+            if (isSignAt(chest, x, y, z)) {
+                return chest;
+            }
+
+            if (isRegistered(vaults, chest) && (!chest.isChestLoaded() || chest.matchesLocation(x, y, z))) {
+                return chest;
+            }
+
+            vaults.blocks.remove(key, chest);
+        }
+
+        // container blocks are only known once the vault's chunk has been loaded,
+        // so look for a nearby vault claiming this block and remember the result.
+        for (int chunkX = (x - CONTAINER_REACH) >> 4; chunkX <= (x + CONTAINER_REACH) >> 4; chunkX++) {
+            for (int chunkZ = (z - CONTAINER_REACH) >> 4; chunkZ <= (z + CONTAINER_REACH) >> 4; chunkZ++) {
+                Set<AccountChest> candidates = vaults.chunks.get(chunkKey(chunkX, chunkZ));
+
+                if (candidates == null) {
+                    continue;
+                }
+
+                for (AccountChest candidate : candidates) {
+                    if (candidate.isChestLoaded() && candidate.matchesLocation(x, y, z)) {
+                        indexContainer(vaults, key, candidate);
+
+                        return candidate;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Forget the containers of every vault that the given block could be a container of, e.g. because a container was
+     * placed or broken there. They are resolved again the next time they are needed.
+     *
+     * @param world world id
+     * @param x     block x
+     * @param y     block y
+     * @param z     block z
+     */
+    public void forgetContainersNear(UUID world, int x, int y, int z) {
+        WorldVaults vaults = worlds.get(world);
+
+        if (vaults == null) {
+            return;
+        }
+
+        for (int chunkX = (x - CONTAINER_REACH) >> 4; chunkX <= (x + CONTAINER_REACH) >> 4; chunkX++) {
+            for (int chunkZ = (z - CONTAINER_REACH) >> 4; chunkZ <= (z + CONTAINER_REACH) >> 4; chunkZ++) {
+                Set<AccountChest> candidates = vaults.chunks.get(chunkKey(chunkX, chunkZ));
+
+                if (candidates == null) {
+                    continue;
+                }
+
+                for (AccountChest candidate : candidates) {
+                    // containers are attached to the sign or below it
+                    if (Math.abs(candidate.getX() - x) <= CONTAINER_REACH
+                            && Math.abs(candidate.getZ() - z) <= CONTAINER_REACH
+                            && Math.abs(candidate.getY() - y) <= 1) {
+                        candidate.forgetContainers();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get all vaults whose sign is in the given chunk.
+     *
+     * @param world  world id
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return the vaults in that chunk, possibly empty
+     */
+    public Collection<AccountChest> getInChunk(UUID world, int chunkX, int chunkZ) {
+        WorldVaults vaults = worlds.get(world);
+
+        if (vaults == null) {
+            return Collections.emptyList();
+        }
+
+        Set<AccountChest> chests = vaults.chunks.get(chunkKey(chunkX, chunkZ));
+
+        return chests == null ? Collections.emptyList() : Collections.unmodifiableSet(chests);
+    }
+
+    /**
+     * Get all vaults owned by the given account owner.
+     *
+     * @param type owner type
+     * @param id   owner id
+     * @return immutable list of the owner's vaults, in registration order
+     */
+    public List<AccountChest> getByOwner(String type, String id) {
+        return byOwner.getOrDefault(ownerKey(type, id), Collections.emptyList());
+    }
+
+    /**
+     * All registered vaults, in no particular order.
+     *
+     * @return unmodifiable view of all registered vaults
+     */
+    public Collection<AccountChest> getAll() {
+        return Collections.unmodifiableSet(all);
+    }
+
+    /**
+     * Number of registered vaults.
+     *
+     * @return number of registered vaults
+     */
+    public int size() {
+        return all.size();
+    }
+
+    private synchronized void indexContainer(WorldVaults vaults, long key, AccountChest chest) {
+        // the vault may have been removed while we were looking it up
+        if (isRegistered(vaults, chest)) {
+            vaults.blocks.putIfAbsent(key, chest);
+        }
+    }
+
+    private void unindex(WorldVaults vaults, AccountChest chest) {
+        vaults.blocks.remove(blockKey(chest.getX(), chest.getY(), chest.getZ()), chest);
+
+        for (long container : chest.getContainerPositions()) {
+            vaults.blocks.remove(container, chest);
+        }
+
+        long chunk = chunkKey(chest.getX() >> 4, chest.getZ() >> 4);
+        Set<AccountChest> inChunk = vaults.chunks.get(chunk);
+
+        if (inChunk != null) {
+            inChunk.remove(chest);
+
+            if (inChunk.isEmpty()) {
+                vaults.chunks.remove(chunk);
+            }
+        }
+
+        all.remove(chest);
+    }
+
+    /**
+     * Add vaults to the per-owner index, copying each owner's list once however many of its vaults are added.
+     */
+    private void indexOwners(Collection<AccountChest> chests) {
+        for (Map.Entry<String, List<AccountChest>> owner : groupByOwner(chests).entrySet()) {
+            byOwner.merge(owner.getKey(), List.copyOf(owner.getValue()), (current, added) -> {
+                List<AccountChest> updated = new ArrayList<>(current.size() + added.size());
+
+                updated.addAll(current);
+                updated.addAll(added);
+
+                return List.copyOf(updated);
+            });
+        }
+    }
+
+    /**
+     * Remove vaults from the per-owner index, copying each owner's list once however many of its vaults are removed.
+     */
+    private void unindexOwners(Collection<AccountChest> chests) {
+        for (Map.Entry<String, List<AccountChest>> owner : groupByOwner(chests).entrySet()) {
+            Set<AccountChest> removed = new HashSet<>(owner.getValue());
+
+            byOwner.computeIfPresent(owner.getKey(), (key, current) -> {
+                List<AccountChest> updated = new ArrayList<>(current.size());
+
+                for (AccountChest chest : current) {
+                    if (!removed.contains(chest)) {
+                        updated.add(chest);
+                    }
+                }
+
+                return updated.isEmpty() ? null : List.copyOf(updated);
+            });
+        }
+    }
+
+    private static Map<String, List<AccountChest>> groupByOwner(Collection<AccountChest> chests) {
+        Map<String, List<AccountChest>> grouped = new LinkedHashMap<>();
+
+        for (AccountChest chest : chests) {
+            grouped.computeIfAbsent(ownerKey(chest.account.owner.getType(), chest.account.owner.getId()),
+                    key -> new ArrayList<>(1)).add(chest);
+        }
+
+        return grouped;
+    }
+
+    private static boolean isRegistered(WorldVaults vaults, AccountChest chest) {
+        return vaults.blocks.get(blockKey(chest.getX(), chest.getY(), chest.getZ())) == chest;
+    }
+
+    private static boolean isSignAt(AccountChest chest, int x, int y, int z) {
+        return chest.getX() == x && chest.getY() == y && chest.getZ() == z;
+    }
+
+    private static final class WorldVaults {
+        private final Map<Long, AccountChest> blocks = new ConcurrentHashMap<>();
+        private final Map<Long, Set<AccountChest>> chunks = new ConcurrentHashMap<>();
+    }
+}
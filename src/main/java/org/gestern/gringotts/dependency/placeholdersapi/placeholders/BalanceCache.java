@@ -0,0 +1,92 @@
+package org.gestern.gringotts.dependency.placeholdersapi.placeholders;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import org.gestern.gringotts.Configuration;
+import org.gestern.gringotts.Gringotts;
+import org.gestern.gringotts.api.BalanceBreakdown;
+import org.gestern.gringotts.api.Eco;
+
+/**
+ * Caches the placeholder values of players, so that placeholders requested many times per second don't recount
+ * balances every time.
+ * <p>
+ * Values older than the configured TTL are still served while a single recount runs, so a request never waits for a
+ * count and every account is counted at most once per TTL. Recounts go through
+ * {@link org.gestern.gringotts.api.Account#balanceBreakdownAsync()}: on Paper they run on the server thread, on Folia
+ * every vault and the player's inventories are counted on the thread of the region owning them.
+ */
+final class BalanceCache {
+    /**
+     * Minimum time in milliseconds before an entry that isn't requested anymore is dropped.
+     */
+    private static final long MIN_IDLE_MILLIS = 60_000;
+
+    private final Eco eco;
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private volatile long lastSweep = System.currentTimeMillis();
+
+    private static final class Entry {
+        private final AtomicBoolean       refreshing = new AtomicBoolean();
+        private volatile BalanceBreakdown breakdown;
+        private volatile long             countedAt;
+        private volatile long             requestedAt;
+    }
+
+    BalanceCache(Eco eco) {
+        this.eco = eco;
+    }
+
+    /**
+     * Get the placeholder values of a player.
+     *
+     * @param player unique id of the player
+     * @return the latest counted values, or null if they were never counted and can't be counted right away
+     */
+    BalanceBreakdown get(UUID player) {
+        long  now   = System.currentTimeMillis();
+        Entry entry = entries.computeIfAbsent(player, id -> new Entry());
+
+        entry.requestedAt = now;
+
+        // on the server thread of Paper, the count completes right away
+        if (now - entry.countedAt >= Configuration.CONF.placeholderCacheTtl
+                && entry.refreshing.compareAndSet(false, true)) {
+            eco.player(player).balanceBreakdownAsync().whenComplete((breakdown, error) -> {
+                if (error != null) {
+                    Gringotts.instance.getLogger().log(
+                            Level.WARNING, "Failed to count placeholder balances of " + player, error
+                    );
+                } else {
+                    entry.breakdown = breakdown;
+                }
+
+                // also when it failed, so a broken account isn't recounted on every request
+                entry.countedAt = System.currentTimeMillis();
+                entry.refreshing.set(false);
+            });
+        }
+
+        sweep(now);
+
+        return entry.breakdown;
+    }
+
+    /**
+     * Drop the entries of players whose placeholders aren't requested anymore.
+     */
+    private void sweep(long now) {
+        long idle = Math.max(MIN_IDLE_MILLIS, Configuration.CONF.placeholderCacheTtl * 10);
+
+        if (now - lastSweep < idle) {
+            return;
+        }
+
+        lastSweep = now;
+        entries.values().removeIf(entry -> now - entry.requestedAt > idle);
+    }
+}
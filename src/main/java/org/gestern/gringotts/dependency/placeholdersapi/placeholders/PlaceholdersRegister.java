@@ -4,16 +4,15 @@ import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import org.bukkit.Location;
 import org.bukkit.OfflinePlayer;
 import org.gestern.gringotts.Gringotts;
-import org.gestern.gringotts.api.Account;
-import org.gestern.gringotts.api.impl.GringottsEco;
+import org.gestern.gringotts.api.BalanceBreakdown;
 import org.jetbrains.annotations.NotNull;
 
 public class PlaceholdersRegister extends PlaceholderExpansion {
 
-    private final GringottsEco eco;
+    private final BalanceCache balances;
 
     public PlaceholdersRegister(Gringotts plugin) {
-        eco = (GringottsEco) plugin.getEco();
+        balances = new BalanceCache(plugin.getEco());
     }
 
     @Override
@@ -33,36 +32,42 @@ public class PlaceholdersRegister extends PlaceholderExpansion {
 
     @Override
     public String onRequest(OfflinePlayer player, String paramString) {
-        String[] params  = paramString.split("_");
-        Account  account = eco.player(player.getUniqueId());
+        String[]         params    = paramString.split("_");
+        BalanceBreakdown breakdown = balances.get(player.getUniqueId());
+
+        if (breakdown == null) {
+            // not counted yet, will be shortly
+            return "";
+        }
 
         if (params[0].equalsIgnoreCase("balance") || params[0].equalsIgnoreCase("money")) {
 
             if (params.length == 2) {
                 if (params[1].equalsIgnoreCase("vault")) {
-                    return String.valueOf(account.vaultBalance());
+                    return String.valueOf(breakdown.vaultBalance());
                 }
                 if (params[1].equalsIgnoreCase("inventory")) {
-                    return String.valueOf(account.invBalance());
+                    return String.valueOf(breakdown.invBalance());
                 }
             } else if (params.length == 1) {
-                return String.valueOf(account.balance());
+                return String.valueOf(breakdown.total());
             }
         } else if (params[0].equalsIgnoreCase("vault") && params.length >= 2) {
 
             if (params[1].equalsIgnoreCase("count")) {
-                return String.valueOf(account.vaultCount());
+                return String.valueOf(breakdown.vaults().size());
             } else if (params.length == 3) {
                 try {
                     int index = Integer.parseInt(params[1]);
 
-                    if (index >= account.vaultCount()) {
+                    if (index >= breakdown.vaults().size()) {
                         return "out of bounds";
                     }
 
+                    BalanceBreakdown.Vault vault = index >= 0 ? breakdown.vaults().get(index) : null;
 
                     if (params[2].equalsIgnoreCase("location") || params[2].equalsIgnoreCase("position")) {
-                        Location loc = account.vaultLocation(index);
+                        Location loc = vault != null ? vault.location() : null;
                         if (loc == null) {
                             return null;
                         }
@@ -73,7 +78,11 @@ public class PlaceholdersRegister extends PlaceholderExpansion {
                     }
 
                     if (params[2].equalsIgnoreCase("balance")) {
-                        return String.valueOf(account.vaultBalance(index));
+                        if (vault != null) {
+                            return String.valueOf(vault.balance());
+                        }
+
+                        return String.valueOf(index == -1 ? breakdown.enderChest() : 0);
                     }
 
                 } catch (NumberFormatException e) {
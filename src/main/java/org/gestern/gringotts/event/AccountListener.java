@@ -6,21 +6,24 @@ import java.util.regex.Pattern;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.Chunk;
 import org.bukkit.Tag;
 import org.bukkit.block.Sign;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockDispenseEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.block.SignChangeEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
 import org.gestern.gringotts.AccountChest;
 import org.gestern.gringotts.Configuration;
 import org.gestern.gringotts.Gringotts;
-import org.gestern.gringotts.SchedulerUtil;
 import org.gestern.gringotts.Util;
 
 import com.destroystokyo.paper.event.block.BlockDestroyEvent;
@@ -36,6 +39,8 @@ public class AccountListener implements Listener {
 
     private final Pattern VAULT_PATTERN = Pattern.compile(Configuration.CONF.vaultPattern, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
 
+    private final VaultRecounter recounter = new VaultRecounter();
+
     /**
      * Create an account chest by adding a sign marker over it.
      *
@@ -99,53 +104,86 @@ public class AccountListener implements Listener {
         AccountChest chest = getAccountChestFromHolder(event.getInventory());
         if (chest == null) return;
 
-        chest.setCachedBalance(chest.balance(true));
-        Gringotts.instance.getDao().updateChestBalance(chest, chest.getCachedBalance());
+        chest.recountCachedBalance();
     }
 
+    /**
+     * Apply the value of items moved by hoppers and similar blocks to the cached balance of the vaults involved.
+     * The moved stack is known exactly, so the vaults don't need to be recounted.
+     *
+     * @param event Event data.
+     */
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onInventoryMoveItem(InventoryMoveItemEvent event) {
+        long value = Configuration.CONF.getCurrency().getValue(event.getItem());
+
+        if (value == 0) {
+            return;
+        }
+
         if (Util.isValidInventory(event.getSource().getType())) {
             AccountChest chest = getAccountChestFromHolder(event.getSource());
             if (chest != null) {
-                SchedulerUtil.runNextTick(event.getSource().getLocation(), () -> {
-                    chest.setCachedBalance(chest.balance(true));
-                    Gringotts.instance.getDao().updateChestBalance(chest, chest.getCachedBalance());
-                });
+                chest.setCachedBalance(chest.getCachedBalance() - value);
             }
         }
         if (event.getDestination() != null && Util.isValidInventory(event.getDestination().getType())) {
             AccountChest chest = getAccountChestFromHolder(event.getDestination());
             if (chest != null) {
-                SchedulerUtil.runNextTick(event.getDestination().getLocation(), () -> {
-                    chest.setCachedBalance(chest.balance(true));
-                    Gringotts.instance.getDao().updateChestBalance(chest, chest.getCachedBalance());
-                });
+                chest.setCachedBalance(chest.getCachedBalance() + value);
             }
         }
     }
 
     @EventHandler
     public void onDispenseEvent(BlockDispenseEvent event) {
-        if (event.getBlock().getState() instanceof InventoryHolder) {
-            AccountChest chest = getAccountChestFromHolder(((InventoryHolder) event.getBlock().getState()).getInventory());
+        if (event.getBlock().getState(false) instanceof InventoryHolder holder) {
+            AccountChest chest = getAccountChestFromHolder(holder.getInventory());
             if (chest != null) {
-                SchedulerUtil.runNextTick(event.getBlock().getLocation(), () -> {
-                    chest.setCachedBalance(chest.balance(true));
-                    Gringotts.instance.getDao().updateChestBalance(chest, chest.getCachedBalance());
-                });
+                recounter.markDirty(chest);
             }
         }
     }
 
+    /**
+     * Store the balance of vaults before their chunk is unloaded, so that the cached balance used while they are
+     * unloaded doesn't carry any drift from incremental updates. Vaults are never removed here, see
+     * {@link AccountChest#storeBalanceOnUnload()}.
+     *
+     * @param event Event data.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+
+        for (AccountChest chest : Gringotts.instance.getDao().getAccountChests(chunk.getWorld(), chunk.getX(), chunk.getZ())) {
+            chest.storeBalanceOnUnload();
+            // the containers may change while the chunk is not loaded
+            chest.forgetContainers();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onContainerPlace(BlockPlaceEvent event) {
+        if (Util.isValidContainer(event.getBlock().getType())) {
+            // may turn the container of a vault into a double chest
+            Gringotts.instance.getDao().forgetContainersNear(event.getBlock().getLocation());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onContainerBreak(BlockBreakEvent event) {
+        if (Util.isValidContainer(event.getBlock().getType())) {
+            Gringotts.instance.getDao().forgetContainersNear(event.getBlock().getLocation());
+        }
+    }
+
     @EventHandler
     public void onSignEdit(PlayerOpenSignEvent event) {
-        for (AccountChest chest : Gringotts.instance.getDao().retrieveChests()) {
-            if (!chest.isChestLoaded()) continue; // For a sign to be changed, it needs to be loaded
-            if (event.getSign().getLocation().equals(chest.sign.getLocation())) {
-                event.setCancelled(true);
-                return;
-            }
+        AccountChest chest = Gringotts.instance.getDao().getAccountChest(event.getSign().getLocation());
+
+        if (chest != null && event.getSign().getLocation().equals(chest.getLocation())) {
+            event.setCancelled(true);
         }
     }
 
@@ -155,13 +193,7 @@ public class AccountListener implements Listener {
      * @return the {@link AccountChest} or null if none was found
      */
     private AccountChest getAccountChestFromHolder(Inventory holder) {
-        for (AccountChest chest : Gringotts.instance.getDao().retrieveChests()) {
-            if (!chest.isChestLoaded()) continue; // For a chest to be open or interacted with, it needs to be loaded
-
-            if (chest.matchesLocation(holder.getLocation())) {
-                return chest;
-            }
-        }
-        return null;
+        // For a chest to be open or interacted with, it needs to be loaded
+        return Gringotts.instance.getDao().getAccountChest(holder.getLocation());
     }
 }
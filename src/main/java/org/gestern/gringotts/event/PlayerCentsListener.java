@@ -0,0 +1,31 @@
+package org.gestern.gringotts.event;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.gestern.gringotts.Gringotts;
+
+/**
+ * Holds the cents of player accounts in memory while their players are online.
+ * <p>
+ * They are loaded while the player logs in, which happens off the server thread, and forgotten once they are written
+ * after the player quits.
+ */
+public class PlayerCentsListener implements Listener {
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+
+        Gringotts.instance.getDao().loadCents("player", event.getUniqueId().toString());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        Gringotts.instance.getDao().forgetCents("player", event.getPlayer().getUniqueId().toString());
+    }
+}
@@ -0,0 +1,18 @@
+package org.gestern.gringotts.event;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.gestern.gringotts.Gringotts;
+
+/**
+ * Keeps the player name index up to date, so players can be looked up by the name they last joined with.
+ */
+public class PlayerNameListener implements Listener {
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Gringotts.instance.getPlayerNameIndex().update(event.getPlayer());
+    }
+}
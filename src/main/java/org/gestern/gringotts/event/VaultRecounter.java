@@ -0,0 +1,33 @@
+package org.gestern.gringotts.event;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.gestern.gringotts.AccountChest;
+import org.gestern.gringotts.SchedulerUtil;
+
+/**
+ * Coalesces vault recounts: a vault marked dirty any number of times within a tick is recounted once,
+ * on the next tick of the region owning it. Vaults whose chunk was unloaded in between are skipped, their balance
+ * was stored while unloading.
+ */
+class VaultRecounter {
+    private final Set<AccountChest> dirty = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Mark a vault as needing a recount.
+     *
+     * @param chest the vault whose contents changed
+     */
+    void markDirty(AccountChest chest) {
+        if (dirty.add(chest)) {
+            SchedulerUtil.runNextTick(chest.getLocation(), () -> {
+                dirty.remove(chest);
+
+                if (chest.isChestLoaded()) {
+                    chest.recountCachedBalance();
+                }
+            });
+        }
+    }
+}
@@ -1,63 +1,218 @@
 package org.gestern.gringotts.pendingoperation;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
 
 import org.bukkit.Chunk;
+import org.bukkit.World;
 import org.gestern.gringotts.AccountChest;
 import org.gestern.gringotts.Gringotts;
+import org.gestern.gringotts.SchedulerUtil;
 import org.gestern.gringotts.data.EBeanPendingOperation;
+import org.gestern.gringotts.data.StorageExecutor;
+import org.gestern.gringotts.data.StorageStatements;
+import org.gestern.gringotts.data.VaultRegistry;
 
+import io.ebean.Database;
+import io.ebean.SqlUpdate;
+
+/**
+ * Keeps track of balance changes to vaults that happened while their chunk was not loaded,
+ * and applies them once the chunk is loaded again.
+ * <p>
+ * Operations are netted per vault in storage: every vault has at most one stored operation, holding the sum of all
+ * changes since its chunk was last loaded. Nothing is kept in memory. When a chunk with vaults is loaded, its
+ * operations are looked up by chunk off the server thread, then applied on the thread owning the chunk.
+ * <p>
+ * Operations are stored by the storage writer, which commits them together with other writes queued around the same
+ * time. A fetch waits until the operations registered before it are committed, so it always sees them.
+ */
 public class PendingOperationManager {
-    private List<EBeanPendingOperation> pendingOperations;
-    private boolean ready = false;
+    /**
+     * Chunks whose operations are being fetched or applied, so a chunk that is loaded again quickly
+     * doesn't get them applied twice.
+     */
+    private final Set<ChunkKey> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile boolean ready = false;
 
+    private record ChunkKey(String world, long chunk) {
+    }
 
     public void init() {
-        this.pendingOperations = Gringotts.instance.getDatabase().find(EBeanPendingOperation.class).findList();
         this.ready = true;
     }
 
-    public void registerOperation(EBeanPendingOperation operation) {
-        this.pendingOperations.add(operation);
+    /**
+     * Stop applying operations to loaded chunks. Operations queued already are stored by the storage executor before
+     * it shuts down.
+     */
+    public void shutdown() {
+        this.ready = false;
     }
 
+    /**
+     * Store an operation, adding it to the operation already stored for the same vault, if any.
+     *
+     * @param op the operation
+     */
+    public void registerNewOperation(EBeanPendingOperation op) {
+        submit(() -> {
+            SqlUpdate net = StorageStatements.netPendingOperation(
+                    database(), op.getWorld(), op.getX(), op.getY(), op.getZ(), op.getAmount()
+            );
+
+            // inserted by statement rather than by saving the bean, so the storage writer can run it again
+            if (net.execute() == 0) {
+                StorageStatements.insertPendingOperation(
+                        database(), op.getWorld(), op.getX(), op.getY(), op.getZ(), op.getAmount()
+                ).execute();
+            }
+
+            return null;
+        });
+    }
+
+    /**
+     * Apply the pending operations of all vaults in the given chunk. Chunks without vaults are skipped
+     * without touching storage.
+     *
+     * @param chunk the chunk that was just loaded
+     */
     public void applyOperationsForChunk(Chunk chunk) {
-        List<EBeanPendingOperation> operations = getOperationsForChunk(chunk);
-        List<AccountChest> loadedChests = Gringotts.instance.getDao().retrieveChests()
-            .stream().filter(chest -> chest.isChestLoaded()).collect(Collectors.toList());
+        World world  = chunk.getWorld();
+        int   chunkX = chunk.getX();
+        int   chunkZ = chunk.getZ();
+
+        Collection<AccountChest> chests = Gringotts.instance.getDao().getAccountChests(world, chunkX, chunkZ);
+
+        if (chests.isEmpty()) return;
+
+        ChunkKey key = new ChunkKey(world.getName(), VaultRegistry.chunkKey(chunkX, chunkZ));
+
+        if (!inFlight.add(key)) return;
+
+        StorageExecutor storage = Gringotts.instance.getStorageExecutor();
+
+        // the empty write completes once every operation registered before it is committed, so the fetch sees them
+        storage.write(() -> null).thenCompose(ignored -> storage.read(() -> database().find(EBeanPendingOperation.class)
+                .where()
+                .eq("world", key.world())
+                .eq("chunkX", chunkX)
+                .eq("chunkZ", chunkZ)
+                .findList()
+        )).whenComplete((operations, e) -> {
+            if (e != null) {
+                inFlight.remove(key);
+                logFailure(e);
+
+                return;
+            }
+
+            if (operations.isEmpty()) {
+                inFlight.remove(key);
+
+                Gringotts.instance.getVaultReconciler().submit(chests);
+
+                return;
+            }
+
+            SchedulerUtil.runAt(world, chunkX, chunkZ, () -> apply(key, world, chunkX, chunkZ, operations));
+        });
+    }
+
+    /**
+     * Apply fetched operations to the vaults of a chunk. Must be run on the thread owning the chunk.
+     */
+    private void apply(ChunkKey key, World world, int chunkX, int chunkZ, List<EBeanPendingOperation> operations) {
+        // unloaded again in the meantime, apply them the next time it is loaded
+        if (!world.isChunkLoaded(chunkX, chunkZ)) {
+            inFlight.remove(key);
+
+            return;
+        }
+
+        Map<Long, EBeanPendingOperation> byPosition = new HashMap<>();
 
         for (EBeanPendingOperation operation : operations) {
-            Optional<AccountChest> accountChest = loadedChests.stream().filter(chest ->
-                chest.sign.getX() == operation.getX() &&
-                chest.sign.getY() == operation.getY() &&
-                chest.sign.getZ() == operation.getZ() &&
-                chest.sign.getWorld().getName().equals(operation.getWorld())
-            ).findAny();
+            byPosition.put(VaultRegistry.blockKey(operation.getX(), operation.getY(), operation.getZ()), operation);
+        }
+
+        Map<Integer, Long> applied = new HashMap<>();
+
+        for (AccountChest chest : Gringotts.instance.getDao().getAccountChests(world, chunkX, chunkZ)) {
+            EBeanPendingOperation operation = byPosition.remove(
+                    VaultRegistry.blockKey(chest.getX(), chest.getY(), chest.getZ())
+            );
 
-            if (accountChest.isEmpty()) continue;
+            if (operation == null) continue;
 
             if (operation.getAmount() < 0) {
-                accountChest.get().remove(-operation.getAmount());
-            } else {
-                accountChest.get().add(operation.getAmount());
+                chest.remove(-operation.getAmount());
+            } else if (operation.getAmount() > 0) {
+                chest.add(operation.getAmount());
             }
 
-            pendingOperations.remove(operation);
-            Gringotts.instance.getDatabase().delete(operation);
+            applied.put(operation.getId(), operation.getAmount());
+        }
+
+        // operations without a vault to apply them to (yet) stay stored for the next time the chunk is loaded.
+        // the chunk stays in flight until they are settled, so a quick reload doesn't apply them again
+        if (applied.isEmpty()) {
+            inFlight.remove(key);
+        } else {
+            submit(() -> settle(applied)).whenComplete((ignored, e) -> inFlight.remove(key));
         }
 
+        // vaults loaded from storage while the chunk wasn't loaded are checked now that their cached balance
+        // includes the applied operations
+        Gringotts.instance.getVaultReconciler().submit(Gringotts.instance.getDao().getAccountChests(world, chunkX, chunkZ));
     }
 
-    public void registerNewOperation(EBeanPendingOperation op) {
-        Gringotts.instance.getDatabase().save(op);
-        pendingOperations.add(op);
+    /**
+     * Subtract the applied amounts from the stored operations and delete the ones that are settled. Amounts
+     * registered after the operations were fetched are kept for the next load.
+     *
+     * @param applied applied amount by operation id
+     */
+    private Void settle(Map<Integer, Long> applied) {
+        StorageStatements.settlePendingOperations(database(), applied);
+
+        return null;
+    }
+
+    /**
+     * Queue a write for the storage writer, which commits it together with the other writes queued around the
+     * same time.
+     */
+    private <V> CompletableFuture<V> submit(StorageExecutor.Write<V> write) {
+        return Gringotts.instance.getStorageExecutor().write(write).whenComplete((ignored, e) -> {
+            if (e != null) {
+                logFailure(e);
+            }
+        });
+    }
+
+    private static void logFailure(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+        // operations queued while shutting down stay stored for the next start
+        if (cause instanceof RejectedExecutionException) {
+            return;
+        }
+
+        Gringotts.instance.getLogger().log(Level.SEVERE, "Failed to process pending vault operations", cause);
     }
 
-    private List<EBeanPendingOperation> getOperationsForChunk(Chunk chunk) {
-        return pendingOperations.stream().filter(op -> chunk.getX() == op.getChunkX() && chunk.getZ() == op.getChunkZ())
-            .collect(Collectors.toList());
+    private static Database database() {
+        return Gringotts.instance.getDatabase();
     }
 
     public boolean isReady() {
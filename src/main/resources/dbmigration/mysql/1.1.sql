@@ -0,0 +1,13 @@
+-- apply changes
+create table gringotts_pending_operation (
+  id                            integer auto_increment not null,
+  world                         varchar(255) not null,
+  x                             integer not null,
+  y                             integer not null,
+  z                             integer not null,
+  amount                        bigint not null,
+  constraint pk_gringotts_pending_operation primary key (id)
+);
+
+-- apply alter tables
+alter table gringotts_accountchest add column total_value bigint default 0 not null;
@@ -0,0 +1,8 @@
+-- apply alter tables
+alter table gringotts_pending_operation add column chunk_x integer default 0 not null;
+alter table gringotts_pending_operation add column chunk_z integer default 0 not null;
+
+-- the table is created empty by 1.1 on this platform, there are no operations to backfill or net
+
+-- apply post alter
+create index ix_gringotts_pending_operation_world_chunk_x_chunk_z on gringotts_pending_operation (world,chunk_x,chunk_z);
@@ -0,0 +1,21 @@
+-- apply alter tables
+alter table gringotts_pending_operation add column chunk_x integer default 0 not null;
+alter table gringotts_pending_operation add column chunk_z integer default 0 not null;
+
+-- backfill chunk coordinates of existing operations
+update gringotts_pending_operation set chunk_x = x >> 4, chunk_z = z >> 4;
+
+-- net existing operations into a single row per vault
+update gringotts_pending_operation set amount = (
+  select sum(p.amount) from gringotts_pending_operation p
+  where p.world = gringotts_pending_operation.world
+    and p.x = gringotts_pending_operation.x
+    and p.y = gringotts_pending_operation.y
+    and p.z = gringotts_pending_operation.z
+);
+delete from gringotts_pending_operation where id not in (
+  select min(id) from gringotts_pending_operation group by world, x, y, z
+);
+
+-- apply post alter
+create index ix_gringotts_pending_operation_world_chunk_x_chunk_z on gringotts_pending_operation (world,chunk_x,chunk_z);
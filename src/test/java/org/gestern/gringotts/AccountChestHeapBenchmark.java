@@ -0,0 +1,146 @@
+package org.gestern.gringotts;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.bukkit.Location;
+import org.bukkit.block.Sign;
+import org.gestern.gringotts.accountholder.AccountHolder;
+
+public class AccountChestHeapBenchmark {
+    private static final int VAULTS = 200_000;
+    private static final int OWNERS = 2_000;
+
+    /**
+     * What every vault used to hold on to: its own compiled vault pattern, an id string, the live sign block state
+     * and a list of container locations, with a fresh account object per vault.
+     */
+    private static final class LegacyVault {
+        private final Pattern          pattern = Pattern.compile(Configuration.CONF.vaultPattern, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        private final String           id;
+        private final Sign             sign;
+        private final List<Location>   containerLocations = new ArrayList<>();
+        private final GringottsAccount account;
+        private final long             cachedBalance;
+
+        private LegacyVault(UUID world, int x, int y, int z, GringottsAccount account, long cachedBalance) {
+            this.id = String.format("%s_%d_%d_%d", world, x, y, z);
+            // a sign block state can't be created outside a server, so its share of the old footprint is left out
+            this.sign = null;
+            this.account = account;
+            this.cachedBalance = cachedBalance;
+        }
+    }
+
+    /**
+     * Measures the heap retained per vault, as loaded at startup, for the compact representation and for the one it
+     * replaced, as the difference in used heap after garbage collection. Vaults are spread over a few worlds and
+     * owners, with a few vaults per owner as on a real server.
+     * <p>
+     * Accounts are created without a DAO, which they only need for transactions. Legacy vaults get an account of
+     * their own but share the owner's account holder, so the legacy figure is a lower bound.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        UUID[]   worlds  = {UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()};
+        Holder[] holders = new Holder[OWNERS];
+
+        GringottsAccount[] owners = new GringottsAccount[OWNERS];
+
+        for (int i = 0; i < OWNERS; i++) {
+            holders[i] = new Holder(UUID.randomUUID().toString());
+            owners[i] = new GringottsAccount(holders[i], null);
+        }
+
+        long baseline = usedHeap();
+
+        AccountChest[] compact = new AccountChest[VAULTS];
+
+        for (int i = 0; i < VAULTS; i++) {
+            compact[i] = new AccountChest(worlds[i % worlds.length], x(i), y(i), z(i), owners[i % OWNERS], i);
+        }
+
+        long compactBytes = usedHeap() - baseline;
+
+        Reference.reachabilityFence(compact);
+
+        compact = null;
+        baseline = usedHeap();
+
+        LegacyVault[] legacy = new LegacyVault[VAULTS];
+
+        for (int i = 0; i < VAULTS; i++) {
+            GringottsAccount account = new GringottsAccount(holders[i % OWNERS], null);
+
+            legacy[i] = new LegacyVault(worlds[i % worlds.length], x(i), y(i), z(i), account, i);
+        }
+
+        long legacyBytes = usedHeap() - baseline;
+
+        System.out.printf("%d vaults of %d owners%n", VAULTS, OWNERS);
+        System.out.printf("before: %6.1f bytes/vault (without the sign block state)%n", (double) legacyBytes / VAULTS);
+        System.out.printf("after:  %6.1f bytes/vault%n", (double) compactBytes / VAULTS);
+
+        // keep everything reachable until measured
+        Reference.reachabilityFence(legacy);
+        Reference.reachabilityFence(owners);
+    }
+
+    private static int x(int i) {
+        return (i * 31) % 60_000 - 30_000;
+    }
+
+    private static int y(int i) {
+        return i % 384 - 64;
+    }
+
+    private static int z(int i) {
+        return (i * 17) % 60_000 - 30_000;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static final class Holder implements AccountHolder {
+        private final String id;
+
+        private Holder(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getName() {
+            return id;
+        }
+
+        @Override
+        public void sendMessage(String message) {
+        }
+
+        @Override
+        public String getType() {
+            return "player";
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public boolean hasPermission(String permission) {
+            return false;
+        }
+    }
+}
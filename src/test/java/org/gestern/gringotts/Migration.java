@@ -7,14 +7,16 @@ import io.ebean.dbmigration.DbMigration;
 
 public class Migration {
     /**
-     * Generates files used to update Ebean storage when data models are changed
+     * Generates files used to update Ebean storage when data models are changed, one folder per supported dialect
      * @param args
      * @throws IOException
      */
     public static void main(String[] args) throws IOException {
 
         DbMigration dbMigration = DbMigration.create();
-        dbMigration.setPlatform(Platform.SQLITE);
+        dbMigration.addPlatform(Platform.SQLITE);
+        dbMigration.addPlatform(Platform.MYSQL);
+        dbMigration.addPlatform(Platform.POSTGRES);
 
         dbMigration.generateMigration();
     }
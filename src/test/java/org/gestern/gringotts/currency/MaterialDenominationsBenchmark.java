@@ -0,0 +1,93 @@
+package org.gestern.gringotts.currency;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.Material;
+
+public class MaterialDenominationsBenchmark {
+    private static final int LOOKUPS = 10_000_000;
+
+    private record Coin(Material material, int customModelData) {
+    }
+
+    /**
+     * Compares looking up custom-model-data denominations through the per-material table the currency uses
+     * with a linear scan, for a growing number of denominations configured on the same base material.
+     * Index lookups should take about the same time for every size.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        for (int size : new int[]{1, 4, 16, 64, 256}) {
+            List<Coin> coins = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                coins.add(new Coin(Material.GOLD_NUGGET, 1000 + i));
+            }
+
+            @SuppressWarnings("unchecked")
+            MaterialDenominations<Coin>[] index = new MaterialDenominations[Material.values().length];
+
+            index[Material.GOLD_NUGGET.ordinal()] = new MaterialDenominations<>(coins, Coin::customModelData);
+
+            // warm up
+            indexed(index, size);
+            scanned(coins, size);
+
+            long start = System.nanoTime();
+            long indexedHits = indexed(index, size);
+            long indexedNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long scannedHits = scanned(coins, size);
+            long scannedNanos = System.nanoTime() - start;
+
+            System.out.printf("%4d denominations: index %6.2f ns/lookup, linear scan %7.2f ns/lookup (%d/%d hits)%n",
+                    size,
+                    (double) indexedNanos / LOOKUPS,
+                    (double) scannedNanos / LOOKUPS,
+                    indexedHits,
+                    scannedHits);
+        }
+    }
+
+    private static long indexed(MaterialDenominations<Coin>[] index, int size) {
+        long hits = 0;
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            // mix in misses: models that aren't configured, and a material that isn't currency at all
+            Material material = (i & 3) == 3 ? Material.STONE : Material.GOLD_NUGGET;
+
+            MaterialDenominations<Coin> denominations = index[material.ordinal()];
+
+            if (denominations == null) {
+                continue;
+            }
+
+            if (!denominations.get(1000 + (i % (size * 2))).isEmpty()) {
+                hits++;
+            }
+        }
+
+        return hits;
+    }
+
+    private static long scanned(List<Coin> coins, int size) {
+        long hits = 0;
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            Material material = (i & 3) == 3 ? Material.STONE : Material.GOLD_NUGGET;
+            int customModelData = 1000 + (i % (size * 2));
+
+            for (Coin coin : coins) {
+                if (coin.material() == material && coin.customModelData() == customModelData) {
+                    hits++;
+                    break;
+                }
+            }
+        }
+
+        return hits;
+    }
+}
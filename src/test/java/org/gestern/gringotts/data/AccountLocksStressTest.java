@@ -0,0 +1,273 @@
+package org.gestern.gringotts.data;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gestern.gringotts.AccountChest;
+import org.gestern.gringotts.Configuration;
+import org.gestern.gringotts.GringottsAccount;
+import org.gestern.gringotts.accountholder.AccountHolder;
+
+import io.ebean.Database;
+
+public class AccountLocksStressTest {
+    private static final int    THREADS    = 16;
+    private static final int    ACCOUNTS   = 200;
+    private static final int    OPERATIONS = 20_000;
+    private static final long   START      = 1_000;
+    private static final String TYPE       = "player";
+    private static final String WORLD      = "world";
+    private static final UUID   WORLD_ID   = UUID.randomUUID();
+
+    /**
+     * Hammers the account locks from many threads with the changes the DAO makes under them, on the DAO's own
+     * components against an in-memory H2 database: moving cents between two accounts through the cents cache, adding
+     * and removing vaults of an account in the vault registry and in storage, reading an account's cents, and flushing
+     * the cents through the storage writer. Any change that isn't serialized per account shows up as lost money, or as
+     * a registry that disagrees with storage. Owners are spelled with random case, as they come in from commands.
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        Configuration.CONF.storageUrl =
+                "jdbc:h2:mem:gringotts_stress;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+        Configuration.CONF.storageDialect = "mysql";
+        Configuration.CONF.storageDriver = "org.h2.Driver";
+        Configuration.CONF.storageUsername = "sa";
+        Configuration.CONF.storagePassword = "";
+
+        StorageBackend  backend = StorageBackend.fromConfig("unused");
+        Database        db      = backend.open(AccountLocksStressTest.class.getClassLoader());
+        StorageExecutor storage = new StorageExecutor(db, 4, 2);
+
+        try {
+            run(db, storage);
+        } finally {
+            storage.shutdown(10, TimeUnit.SECONDS);
+            db.shutdown();
+        }
+    }
+
+    private static void run(Database db, StorageExecutor storage) throws InterruptedException {
+        AccountLocks  locks  = new AccountLocks();
+        CentsCache    cents  = new CentsCache(db, () -> storage);
+        VaultRegistry chests = new VaultRegistry();
+
+        GringottsAccount[] accounts = new GringottsAccount[ACCOUNTS];
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            // the registry and the cents cache never ask the account for its storage
+            accounts[i] = new GringottsAccount(new Holder(owner(i)), null);
+
+            int account = i;
+
+            storage.write(() -> StorageStatements.insertAccount(db, TYPE, owner(account)).execute());
+            cents.set(TYPE, owner(i), START);
+        }
+
+        flush(storage, cents).join();
+
+        AtomicInteger positions = new AtomicInteger();
+        AtomicLong    created   = new AtomicLong();
+        AtomicLong    removed   = new AtomicLong();
+
+        ConcurrentLinkedQueue<CompletableFuture<?>> writes = new ConcurrentLinkedQueue<>();
+
+        CountDownLatch ready   = new CountDownLatch(1);
+        Thread[]       threads = new Thread[THREADS];
+
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+
+                try {
+                    ready.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                for (int i = 0; i < OPERATIONS; i++) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to   = random.nextInt(ACCOUNTS);
+
+                    String fromOwner = spelled(from, random);
+                    String toOwner   = spelled(to, random);
+
+                    switch (random.nextInt(8)) {
+                        case 0, 1, 2 -> locks.with(TYPE, fromOwner, toOwner, () -> {
+                            long fromCents = cents.get(TYPE, fromOwner);
+                            long amount    = Math.min(fromCents, random.nextLong(10));
+
+                            cents.set(TYPE, fromOwner, fromCents - amount);
+                            cents.set(TYPE, toOwner, cents.get(TYPE, toOwner) + amount);
+
+                            return null;
+                        });
+                        case 3 -> locks.run(TYPE, fromOwner, () -> {
+                            int          x     = positions.incrementAndGet();
+                            AccountChest chest = new AccountChest(WORLD_ID, x, 64, 0, accounts[from], 0);
+
+                            chests.add(chest);
+                            writes.add(storage.write(() -> StorageStatements.insertChest(
+                                    db, WORLD, x, 64, 0, TYPE, owner(from), 0
+                            ).execute()));
+                            created.incrementAndGet();
+                        });
+                        case 4 -> locks.run(TYPE, fromOwner, () -> {
+                            List<AccountChest> owned = chests.getByOwner(TYPE, owner(from));
+
+                            if (owned.isEmpty()) {
+                                return;
+                            }
+
+                            AccountChest chest = owned.get(random.nextInt(owned.size()));
+
+                            if (chests.remove(WORLD_ID, chest.getX(), chest.getY(), chest.getZ()) != null) {
+                                writes.add(storage.write(() -> StorageStatements.deleteChest(
+                                        db, WORLD, chest.getX(), chest.getY(), chest.getZ()
+                                ).execute()));
+                                removed.incrementAndGet();
+                            }
+                        });
+                        case 5 -> writes.add(flush(storage, cents));
+                        default -> {
+                            long balance = locks.with(TYPE, fromOwner, () -> cents.get(TYPE, fromOwner));
+
+                            if (balance < 0) {
+                                throw new IllegalStateException("Negative balance " + balance + " on account " + from);
+                            }
+                        }
+                    }
+                }
+            });
+
+            threads[t].start();
+        }
+
+        long start = System.nanoTime();
+
+        ready.countDown();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        writes.forEach(CompletableFuture::join);
+        flush(storage, cents).join();
+
+        long elapsed = System.nanoTime() - start;
+
+        long cached = 0;
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            cached += cents.get(TYPE, owner(i));
+        }
+
+        long stored   = db.sqlQuery("SELECT sum(cents) AS n FROM gringotts_account").findOne().getLong("n");
+        long reloaded = 0;
+
+        CentsCache fresh = new CentsCache(db, () -> storage);
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            reloaded += fresh.get(TYPE, spelled(i, ThreadLocalRandom.current()));
+        }
+
+        long expectedVaults = created.get() - removed.get();
+        long byOwner        = 0;
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            byOwner += chests.getByOwner(TYPE, owner(i)).size();
+        }
+
+        long storedVaults = db.sqlQuery("SELECT count(*) AS n FROM gringotts_accountchest").findOne().getLong("n");
+
+        System.out.printf("%d operations on %d threads in %d ms, %d writes in %d commits%n",
+                (long) THREADS * OPERATIONS, THREADS, elapsed / 1_000_000,
+                storage.getWriteMetrics().completed(), storage.getCommits());
+        System.out.printf("total cents %d cached, %d stored, %d reloaded, expected %d%n",
+                cached, stored, reloaded, START * ACCOUNTS);
+        System.out.printf("vaults %d registered, %d by owner, %d stored, expected %d%n",
+                chests.size(), byOwner, storedVaults, expectedVaults);
+
+        boolean centsKept  = cached == START * ACCOUNTS && stored == cached && reloaded == cached;
+        boolean vaultsKept = chests.size() == expectedVaults
+                && byOwner == expectedVaults
+                && storedVaults == expectedVaults;
+
+        if (!centsKept || !vaultsKept) {
+            throw new IllegalStateException("Account state is inconsistent");
+        }
+    }
+
+    /**
+     * Write the pending cents the way the DAO's flush does, putting them back if the write is rolled back.
+     */
+    private static CompletableFuture<Void> flush(StorageExecutor storage, CentsCache cents) {
+        return storage.write(new StorageExecutor.Write<>() {
+            private List<CentsCache.Change> changes = List.of();
+
+            @Override
+            public Void run() {
+                changes = cents.drain();
+
+                if (!cents.write(changes).isEmpty()) {
+                    throw new IllegalStateException("Cents of an account that is not stored");
+                }
+
+                return null;
+            }
+
+            @Override
+            public void rolledBack() {
+                cents.restore(changes);
+            }
+        });
+    }
+
+    private static String owner(int account) {
+        return "owner-" + account;
+    }
+
+    private static String spelled(int account, ThreadLocalRandom random) {
+        return random.nextBoolean() ? owner(account) : owner(account).toUpperCase();
+    }
+
+    private static final class Holder implements AccountHolder {
+        private final String id;
+
+        private Holder(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getName() {
+            return id;
+        }
+
+        @Override
+        public void sendMessage(String message) {
+        }
+
+        @Override
+        public String getType() {
+            return TYPE;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public boolean hasPermission(String permission) {
+            return false;
+        }
+    }
+}
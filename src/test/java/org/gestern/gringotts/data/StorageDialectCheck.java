@@ -0,0 +1,196 @@
+package org.gestern.gringotts.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.gestern.gringotts.Configuration;
+
+import io.ebean.Database;
+import io.ebean.SqlRow;
+import io.ebean.SqlUpdate;
+
+public class StorageDialectCheck {
+    private static final int WRITES = 500;
+
+    /**
+     * Runs the migrations and the raw statements of the DAO and the pending operations, as built by
+     * {@link StorageStatements}, against an in-memory H2
+     * database emulating each supported server database, through the configuration path the plugin takes.
+     * Statements are run through the storage writer as they are by the plugin, including a group in which one write
+     * fails: PostgreSQL refuses every further statement of a transaction after an error, so the group has to be
+     * retried write by write.
+     * <p>
+     * H2's compatibility modes cover the syntax, not the locking, of the emulated databases.
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        check(StorageBackend.Dialect.MYSQL, "MySQL");
+        check(StorageBackend.Dialect.MARIADB, "MariaDB");
+        check(StorageBackend.Dialect.POSTGRES, "PostgreSQL");
+
+        System.out.println("all dialects passed");
+    }
+
+    private static void check(StorageBackend.Dialect dialect, String mode) throws Exception {
+        Configuration.CONF.storageUrl = "jdbc:h2:mem:gringotts_" + dialect.name().toLowerCase()
+                + ";MODE=" + mode + ";DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+        Configuration.CONF.storageDialect = dialect.name();
+        Configuration.CONF.storageDriver = "org.h2.Driver";
+        Configuration.CONF.storageUsername = "sa";
+        Configuration.CONF.storagePassword = "";
+
+        StorageBackend  backend = StorageBackend.fromConfig("unused");
+        Database        db      = backend.open(StorageDialectCheck.class.getClassLoader());
+        StorageExecutor storage = new StorageExecutor(db, 4, 2);
+
+        try {
+            run(db, storage);
+        } finally {
+            storage.shutdown(10, TimeUnit.SECONDS);
+            db.shutdown();
+        }
+
+        System.out.printf("%-8s passed, %d writes in %d commits%n", dialect, storage.getWriteMetrics().completed(), storage.getCommits());
+    }
+
+    private static void run(Database db, StorageExecutor storage) {
+        // accounts
+        storage.write(() -> {
+            for (String owner : List.of("alice", "bob")) {
+                StorageStatements.insertAccount(db, "player", owner).execute();
+            }
+
+            return null;
+        }).join();
+
+        KnownAccounts accounts = new KnownAccounts();
+
+        accounts.load(db);
+        expect(accounts.size(), 2, "accounts loaded");
+        expect(accounts.contains("PLAYER", "Alice"), true, "account found ignoring case");
+
+        // vaults
+        List<CompletableFuture<Integer>> inserts = new ArrayList<>();
+
+        for (int i = 0; i < WRITES; i++) {
+            int x = i;
+
+            inserts.add(storage.write(() -> insertChest(db, "world", x, 64, 0, "alice")));
+        }
+
+        // collides with the first vault, only this write may fail. The account created in the same group is
+        // written again when the group is retried write by write, and must be stored exactly once
+        CompletableFuture<Integer> created   = storage.write(
+                () -> StorageStatements.insertAccount(db, "player", "dave").execute()
+        );
+        CompletableFuture<Integer> duplicate = storage.write(() -> insertChest(db, "world", 0, 64, 0, "bob"));
+
+        inserts.forEach(CompletableFuture::join);
+        expect(failed(duplicate), true, "duplicate vault rejected");
+        expect(created.join(), 1, "account created in failed group");
+        expect(count(db, "gringotts_account"), 3L, "accounts stored");
+        expect(storage.write(() -> insertChest(db, "world", -1, 64, 0, "bob")).join(), 1, "vault of other account stored");
+        expect(count(db, "gringotts_accountchest"), (long) WRITES + 1, "vaults stored");
+
+        SqlUpdate balance = StorageStatements.updateChestBalances(db);
+
+        storage.write(() -> {
+            StorageStatements.addChestBalance(balance, "world", 1, 64, 0, 12_345_678_901L);
+
+            return balance.executeBatch();
+        }).join();
+
+        List<SqlRow> chests = db.sqlQuery(
+                "SELECT ac.world, ac.x, ac.y, ac.z, a.type, a.owner, ac.total_value FROM gringotts_accountchest ac JOIN gringotts_account a ON ac.account = a.id "
+                + "WHERE a.owner = :owner and a.type = :type and ac.x = 1"
+        ).setParameter("owner", "alice").setParameter("type", "player").findList();
+
+        expect(chests.size(), 1, "vault found by owner");
+        expect(chests.get(0).getInteger("y"), 64, "vault y");
+        expect(chests.get(0).getLong("total_value"), 12_345_678_901L, "vault balance");
+
+        // cents, written in batches by the flush
+        CentsCache cents = new CentsCache(db, () -> storage);
+
+        cents.set("player", "alice", 5_000_000_000L);
+        storage.write(() -> {
+            cents.write(cents.drain());
+
+            return null;
+        }).join();
+
+        expect(new CentsCache(db, () -> storage).get("PLAYER", "ALICE"), 5_000_000_000L, "cents written");
+
+        // pending operations, netted per vault
+        for (int i = 0; i < 3; i++) {
+            storage.write(() -> {
+                SqlUpdate net = StorageStatements.netPendingOperation(db, "world", -17, 64, 33, 10L);
+
+                if (net.execute() == 0) {
+                    StorageStatements.insertPendingOperation(db, "world", -17, 64, 33, 10L).execute();
+                }
+
+                return null;
+            }).join();
+        }
+
+        SqlRow operation = db.sqlQuery("SELECT id, amount FROM gringotts_pending_operation WHERE world = :world and chunk_x = :cx and chunk_z = :cz")
+                .setParameter("world", "world")
+                .setParameter("cx", -2)
+                .setParameter("cz", 2)
+                .findOne();
+
+        expect(operation.getLong("amount"), 30L, "operations netted");
+
+        storage.write(() -> {
+            StorageStatements.settlePendingOperations(db, Map.of(operation.getInteger("id"), 30L));
+
+            return null;
+        }).join();
+
+        expect(count(db, "gringotts_pending_operation"), 0L, "settled operations deleted");
+
+        // renaming and deleting
+        SqlUpdate rename = StorageStatements.renameAccount(db, "player", "bob", "carol");
+
+        expect(storage.write(rename::execute).join(), 1, "account renamed");
+
+        SqlUpdate deleteChests = StorageStatements.deleteAccountChests(db, "player", "alice");
+
+        expect(storage.write(deleteChests::execute).join(), WRITES, "vaults of account deleted");
+        expect(count(db, "gringotts_accountchest"), 1L, "vaults of other account kept");
+
+        SqlUpdate deleteAccount = StorageStatements.deleteAccount(db, "player", "alice");
+
+        expect(storage.write(deleteAccount::execute).join(), 1, "account deleted");
+    }
+
+    private static int insertChest(Database db, String world, int x, int y, int z, String owner) {
+        return StorageStatements.insertChest(db, world, x, y, z, "player", owner, 0L).execute();
+    }
+
+    private static long count(Database db, String table) {
+        return db.sqlQuery("SELECT count(*) AS n FROM " + table).findOne().getLong("n");
+    }
+
+    private static boolean failed(CompletableFuture<?> future) {
+        try {
+            future.join();
+
+            return false;
+        } catch (CompletionException e) {
+            return true;
+        }
+    }
+
+    private static void expect(Object actual, Object expected, String what) {
+        if (!expected.equals(actual)) {
+            throw new AssertionError(what + ": expected " + expected + ", got " + actual);
+        }
+    }
+}